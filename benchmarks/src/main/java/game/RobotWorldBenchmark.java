@@ -0,0 +1,126 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеры шага движения роботов: одного робота (как прежний {@code RobotModel.moveRobot()})
+ * и больших миров со скалярным и векторным ядром.
+ *
+ * <p>За итерацию робот проходит расстояние больше любого поля, поэтому роботу, достигшему цели,
+ * сразу назначается новая далекая цель: иначе замер измерял бы в основном спящих роботов.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Djava.awt.headless=true"})
+public class RobotWorldBenchmark {
+
+    /**
+     * размер поля
+     */
+    private static final int field = 10_000_000;
+
+    /**
+     * Мир из многих роботов с выбранным ядром шага.
+     */
+    @State(Scope.Thread)
+    public static class WorldState {
+
+        @Param({"1", "10000", "1000000"})
+        public int robots;
+
+        @Param({"scalar", "vector"})
+        public String kernel;
+
+        private RetargetingWorld world;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            SplittableRandom random = new SplittableRandom(3);
+            world = new RetargetingWorld(robots, StepKernels.select(kernel));
+            for (int i = 0; i < robots; i++) {
+                int index = world.addRobot(random.nextInt(field), random.nextInt(field));
+                world.setTargetPosition(index, random.nextInt(field), random.nextInt(field));
+            }
+        }
+    }
+
+    /**
+     * Один робот, который шагает мимо активного множества, как прежний {@code RobotModel}.
+     * Ядро шага на него не влияет.
+     */
+    @State(Scope.Thread)
+    public static class SingleRobotState {
+        private RobotWorld world;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            world = new RobotWorld(1, StepKernels.scalar());
+            world.addRobot(0, 0);
+            world.setTargetPosition(0, field, field);
+        }
+    }
+
+    @Benchmark
+    public void moveRobots(WorldState state) {
+        state.world.moveRobots(10.0);
+        state.world.retargetReached();
+    }
+
+    @Benchmark
+    public void moveSingleRobot(SingleRobotState state) {
+        RobotWorld world = state.world;
+        world.moveRobot(0, 10.0);
+        if (world.reachedTarget[0]) {
+            // цель в противоположном углу поля
+            world.setTargetPosition(0, field - world.targetPositionX[0], field - world.targetPositionY[0]);
+        }
+    }
+
+    /**
+     * Мир, который запоминает роботов, достигших цели, чтобы после шага назначить им новые цели.
+     */
+    private static class RetargetingWorld extends RobotWorld {
+        private int[] reached = new int[16];
+        private int reachedCount;
+
+        RetargetingWorld(int initialCapacity, StepKernel kernel) {
+            super(initialCapacity, kernel);
+        }
+
+        @Override
+        void onTargetReached(int index) {
+            if (reachedCount == reached.length) {
+                reached = Arrays.copyOf(reached, reachedCount * 2);
+            }
+            reached[reachedCount++] = index;
+        }
+
+        /**
+         * Отправляет каждого робота, достигшего цели на последнем шаге, в противоположный угол поля.
+         */
+        void retargetReached() {
+            for (int i = 0; i < reachedCount; i++) {
+                int index = reached[i];
+                setTargetPosition(index, field - targetPositionX[index], field - targetPositionY[index]);
+            }
+            reachedCount = 0;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package log;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеры буфера записей лога: добавление, чтение диапазона и их конкуренция между потоками.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentLogBufferBenchmark {
+
+    @Param({"5", "1000", "100000"})
+    public int capacity;
+
+    private ConcurrentLogBuffer<LogEntry> buffer;
+    private LogEntry entry;
+
+    @Setup
+    public void setUp() {
+        buffer = new ConcurrentLogBuffer<>(capacity);
+        entry = new LogEntry(LogLevel.Debug, "message");
+        for (int i = 0; i < capacity; i++) {
+            buffer.add(entry);
+        }
+    }
+
+    @Benchmark
+    public void add() {
+        buffer.add(entry);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addContended() {
+        buffer.add(entry);
+    }
+
+    @Benchmark
+    public void range(Blackhole blackhole) {
+        for (LogEntry logEntry : buffer.range(0, 50)) {
+            blackhole.consume(logEntry);
+        }
+    }
+
+    @Benchmark
+    @Group("addWhileReading")
+    @GroupThreads(3)
+    public void writer() {
+        buffer.add(entry);
+    }
+
+    @Benchmark
+    @Group("addWhileReading")
+    @GroupThreads(1)
+    public void reader(Blackhole blackhole) {
+        for (LogEntry logEntry : buffer.range(0, 50)) {
+            blackhole.consume(logEntry);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package log;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеры добавления записи в лог с разным количеством слушателей, с немедленными
+ * и объединенными уведомлениями.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogWindowSourceBenchmark {
+
+    @Param({"0", "1", "16"})
+    public int listeners;
+
+    /**
+     * интервал сброса уведомлений: 0 — каждое сообщение уведомляет слушателей сразу
+     */
+    @Param({"0", "50"})
+    public long flushMillis;
+
+    private LogWindowSource source;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        source = new LogWindowSource(1000, flushMillis);
+        for (int i = 0; i < listeners; i++) {
+            source.registerListener((from, to) -> blackhole.consume(to));
+        }
+    }
+
+    @Benchmark
+    public void append() {
+        source.append(LogLevel.Debug, "message");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void appendContended() {
+        source.append(LogLevel.Debug, "message");
+    }
+}
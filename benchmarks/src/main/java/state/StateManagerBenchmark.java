@@ -0,0 +1,72 @@
+package state;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JInternalFrame;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеры сохранения и восстановления состояния окон, как в {@link StateManager#saveState()}
+ * и {@link StateManager#restoreState()}, но во временный файл и без главного окна.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class StateManagerBenchmark {
+
+    private static final String[] prefixes = {"logWindow", "gameWindow", "coordinatesWindow"};
+
+    private JInternalFrame[] frames;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        frames = new JInternalFrame[prefixes.length];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new JInternalFrame(prefixes[i], true, true, true, true);
+            frames[i].setBounds(10 * i, 20 * i, 300, 400);
+            frames[i].setVisible(true);
+        }
+        file = File.createTempFile("robots-state", ".dat");
+        saveState();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void saveState() throws IOException {
+        Map<String, String> state = new HashMap<>();
+        for (int i = 0; i < frames.length; i++) {
+            StateManager.saveComponentState(frames[i], state, prefixes[i]);
+        }
+        StateManager.writeState(state, file);
+    }
+
+    @Benchmark
+    public void restoreState() throws IOException, ClassNotFoundException {
+        Map<String, String> state = StateManager.readState(file);
+        for (int i = 0; i < frames.length; i++) {
+            StateManager.restoreComponentState(frames[i], state, prefixes[i]);
+        }
+    }
+}
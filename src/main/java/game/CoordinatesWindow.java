@@ -5,24 +5,59 @@ import locale.LocalManagerInterface;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.Observable;
-import java.util.Observer;
 
 /**
- *  представляет внутреннее окно для отображения текущих координат робота.
+ *  представляет внутреннее окно телеметрии робота: текущие координаты, скорость и курс,
+ *  а также график скорости за последние секунды.
+ *  Окно не подписано на такты симуляции: оно само берет снимок мира из общего
+ *  {@link RenderContext} по своему таймеру с низкой частотой и обновляет текст, только если
+ *  он изменился. Поток симуляции при этом ничего не делает и ничего не выделяет.
  */
-public class CoordinatesWindow extends JInternalFrame implements Observer, LocalManagerInterface {
+public class CoordinatesWindow extends JInternalFrame implements LocalManagerInterface {
+    /**
+     * период опроса робота в миллисекундах
+     */
+    private static final int samplePeriodMillis = 250;
+
+    /**
+     * количество последних замеров скорости на графике
+     */
+    private static final int historySize = 120;
+
+    private final RobotModel robotModel;
+    private final RenderContext context;
+    private final Timer sampleTimer;
     private JLabel xLabel;
     private JLabel yLabel;
+    private JLabel speedLabel;
+    private JLabel headingLabel;
+    private Sparkline speedSparkline;
+
+    /**
+     * кольцевой буфер последних замеров скорости
+     */
+    private final double[] speedHistory = new double[historySize];
+    private int historyHead;
+    private int historyCount;
+
+    /**
+     * предыдущий замер: положение робота и момент времени, 0 — замеров еще не было
+     */
+    private double lastX;
+    private double lastY;
+    private long lastSampleNanos;
 
     /**
      * Создает новый экземпляр окна координат.
      *
-     * @param robotModel модель робота, для которой отображаются координаты
+     * @param context контекст отрисовки мира, в котором находится робот
      */
-    public CoordinatesWindow(RobotModel robotModel) {
+    public CoordinatesWindow(RenderContext context) {
         super(LocalManager.getStringLocal("robotCoordinates"));
-        robotModel.addObserver(this); // Подписываемся на уведомления от RobotModel
+        this.context = context;
+        this.robotModel = context.getRobotModel();
+        this.sampleTimer = new Timer(samplePeriodMillis, e -> sample());
+        this.sampleTimer.setCoalesce(true);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(150, 100);
         initializeComponents();
@@ -35,33 +70,79 @@ public class CoordinatesWindow extends JInternalFrame implements Observer, Local
     private void initializeComponents() {
         xLabel = new JLabel("X now: ");
         yLabel = new JLabel("Y now: ");
+        speedLabel = new JLabel("Speed: ");
+        headingLabel = new JLabel("Heading: ");
+        speedSparkline = new Sparkline();
     }
 
     /**
      * Размещает компоненты в окне.
      */
     private void layoutComponents() {
-        JPanel panel = new JPanel(new GridLayout(2, 1));
-        panel.add(xLabel);
-        panel.add(yLabel);
+        JPanel labels = new JPanel(new GridLayout(4, 1));
+        labels.add(xLabel);
+        labels.add(yLabel);
+        labels.add(speedLabel);
+        labels.add(headingLabel);
 
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(labels, BorderLayout.CENTER);
+        panel.add(speedSparkline, BorderLayout.SOUTH);
         getContentPane().add(panel);
     }
 
     /**
-     * Обновляет координаты робота на основе изменений в модели.
-     *
-     * @param observable объект, который вызвал уведомление (RobotModel)
-     * @param obj        дополнительные данные (не используются)
+     * Запускает опрос, когда окно показано.
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        lastSampleNanos = 0;
+        sampleTimer.start();
+    }
+
+    /**
+     * Останавливает опрос, когда окно убрано.
      */
     @Override
-    public void update(Observable observable, Object obj) {
-        if (observable instanceof RobotModel) {
-            RobotModel model = (RobotModel) observable;
-            double x = model.getX();
-            double y = model.getY();
-            updateCoordinates(x, y);
+    public void removeNotify() {
+        sampleTimer.stop();
+        super.removeNotify();
+    }
+
+    /**
+     * Снимает показания робота из последнего снимка мира и обновляет телеметрию.
+     */
+    private void sample() {
+        WorldSnapshot snapshot = context.getSnapshot();
+        int index = robotModel.getIndex();
+        if (index >= snapshot.getRobotCount()) {
+            return;
+        }
+        double x = snapshot.getX(index);
+        double y = snapshot.getY(index);
+        long now = System.nanoTime();
+        if (lastSampleNanos != 0) {
+            double seconds = (now - lastSampleNanos) / 1e9;
+            double speed = RobotWorld.distance(x, y, lastX, lastY) / seconds;
+            addSpeed(speed);
+            setText(speedLabel, String.format("Speed: %.1f/s", speed));
+            speedSparkline.repaint();
         }
+        lastX = x;
+        lastY = y;
+        lastSampleNanos = now;
+        updateCoordinates(x, y);
+        setText(headingLabel, String.format("Heading: %.0f°", Math.toDegrees(snapshot.getDirection(index))));
+    }
+
+    /**
+     * Добавляет замер скорости в кольцевой буфер, вытесняя самый старый.
+     */
+    private void addSpeed(double speed) {
+        speedHistory[historyHead] = speed;
+        historyHead = (historyHead + 1) % historySize;
+        historyCount = Math.min(historyCount + 1, historySize);
     }
 
     /**
@@ -71,12 +152,54 @@ public class CoordinatesWindow extends JInternalFrame implements Observer, Local
      * @param y текущая координата Y робота
      */
     private void updateCoordinates(double x, double y) {
-        xLabel.setText("X now: " + x);
-        yLabel.setText("Y now: " + y);
+        setText(xLabel, String.format("X now: %.1f", x));
+        setText(yLabel, String.format("Y now: %.1f", y));
+    }
+
+    /**
+     * Меняет текст метки, только если он изменился, чтобы не пересчитывать размещение зря.
+     */
+    private static void setText(JLabel label, String text) {
+        if (!text.equals(label.getText())) {
+            label.setText(text);
+        }
     }
 
     @Override
     public void localization() {
         setTitle(LocalManager.getStringLocal("robotCoordinates"));
     }
+
+    /**
+     * График последних замеров скорости. Точки ломаной хранятся в заранее выделенных массивах.
+     */
+    private class Sparkline extends JComponent {
+        private final int[] xPoints = new int[historySize];
+        private final int[] yPoints = new int[historySize];
+
+        Sparkline() {
+            setPreferredSize(new Dimension(historySize, 24));
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            if (historyCount < 2) {
+                return;
+            }
+            double max = 0;
+            for (int i = 0; i < historyCount; i++) {
+                max = Math.max(max, speedHistory[i]);
+            }
+            int width = getWidth();
+            int height = getHeight() - 1;
+            int oldest = (historyHead - historyCount + historySize) % historySize;
+            for (int i = 0; i < historyCount; i++) {
+                double speed = speedHistory[(oldest + i) % historySize];
+                xPoints[i] = (historySize - historyCount + i) * (width - 1) / (historySize - 1);
+                yPoints[i] = max == 0 ? height : height - (int) (speed / max * height);
+            }
+            g.setColor(Color.MAGENTA);
+            g.drawPolyline(xPoints, yPoints, historyCount);
+        }
+    }
 }
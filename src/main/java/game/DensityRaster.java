@@ -0,0 +1,109 @@
+package game;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Растр плотности роботов для мелкого масштаба. Каждый робот становится одним пикселем,
+ * цвет которого темнеет с числом роботов в нем; цели отмечаются зелеными пикселями.
+ * Стоимость кадра — проход по роботам и целям, найденным в области по сеткам снимка,
+ * и один проход по пикселям области, после чего на экран копируется одно изображение.
+ */
+class DensityRaster {
+
+    /**
+     * цвета пикселя в зависимости от количества роботов в нем; 0 — прозрачный
+     */
+    private static final int[] palette = createPalette(16);
+
+    private static final int targetColor = 0xFF00C000;
+
+    private BufferedImage image;
+    private int[] pixels;
+    private int[] counts;
+    private int stride;
+
+    /**
+     * Рисует роботов и цели снимка в указанной области экрана.
+     *
+     * @param g        объект Graphics2D для рисования
+     * @param snapshot снимок мира
+     * @param alpha    коэффициент интерполяции между предыдущим и текущим шагом
+     * @param viewport камера
+     * @param area     область экрана, которую нужно нарисовать
+     */
+    void paint(Graphics2D g, WorldSnapshot snapshot, double alpha, Viewport viewport, Rectangle area) {
+        int width = area.width;
+        int height = area.height;
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        ensureSize(width, height);
+        for (int row = 0; row < height; row++) {
+            Arrays.fill(counts, row * stride, row * stride + width, 0);
+        }
+
+        double minX = viewport.toWorldX(area.x);
+        double minY = viewport.toWorldY(area.y);
+        double maxX = viewport.toWorldX(area.x + width);
+        double maxY = viewport.toWorldY(area.y + height);
+        int found = snapshot.findRobots(minX, minY, maxX, maxY);
+        int[] robots = snapshot.getFoundRobots();
+        for (int k = 0; k < found; k++) {
+            int i = robots[k];
+            int x = (int) Math.floor(viewport.toScreenX(snapshot.getInterpolatedX(i, alpha))) - area.x;
+            int y = (int) Math.floor(viewport.toScreenY(snapshot.getInterpolatedY(i, alpha))) - area.y;
+            if (x >= 0 && x < width && y >= 0 && y < height) {
+                counts[y * stride + x]++;
+            }
+        }
+        int maxCount = palette.length - 1;
+        for (int row = 0; row < height; row++) {
+            int offset = row * stride;
+            for (int p = offset; p < offset + width; p++) {
+                pixels[p] = palette[Math.min(counts[p], maxCount)];
+            }
+        }
+        found = snapshot.findTargets(minX, minY, maxX, maxY);
+        int[] targets = snapshot.getFoundTargets();
+        for (int k = 0; k < found; k++) {
+            int i = targets[k];
+            int x = (int) Math.floor(viewport.toScreenX(snapshot.getTargetX(i))) - area.x;
+            int y = (int) Math.floor(viewport.toScreenY(snapshot.getTargetY(i))) - area.y;
+            if (x >= 0 && x < width && y >= 0 && y < height) {
+                pixels[y * stride + x] = targetColor;
+            }
+        }
+        g.drawImage(image, area.x, area.y, area.x + width, area.y + height, 0, 0, width, height, null);
+    }
+
+    /**
+     * Выделяет изображение не меньше указанного размера; уже выделенное используется повторно.
+     */
+    private void ensureSize(int width, int height) {
+        if (image != null && image.getWidth() >= width && image.getHeight() >= height) {
+            return;
+        }
+        int newWidth = Math.max(width, image == null ? 0 : image.getWidth());
+        int newHeight = Math.max(height, image == null ? 0 : image.getHeight());
+        image = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_ARGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        counts = new int[pixels.length];
+        stride = newWidth;
+    }
+
+    /**
+     * Строит палитру от пурпурного для одного робота до темно-пурпурного для многих.
+     */
+    private static int[] createPalette(int size) {
+        int[] colors = new int[size];
+        for (int count = 1; count < size; count++) {
+            int level = 255 - (count - 1) * 160 / (size - 2);
+            colors[count] = 0xFF000000 | (level << 16) | level;
+        }
+        return colors;
+    }
+}
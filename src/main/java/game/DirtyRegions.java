@@ -0,0 +1,171 @@
+package game;
+
+import java.awt.Rectangle;
+
+/**
+ * Небольшой набор прямоугольников, которые нужно перерисовать. Прямоугольник, который
+ * пересекается с уже записанным или лежит ближе {@link #mergeDistance} пикселей от него,
+ * объединяется с ним; далекие прямоугольники хранятся отдельно, поэтому два робота в разных
+ * углах поля не превращаются в перерисовку всего поля. Если отдельных прямоугольников
+ * становится больше {@link #maxRegions}, новый присоединяется к тому, чья площадь
+ * вырастет меньше всего.
+ */
+class DirtyRegions {
+
+    /**
+     * наибольшее количество отдельных прямоугольников
+     */
+    static final int maxRegions = 8;
+
+    /**
+     * прямоугольники ближе этого расстояния в пикселях объединяются
+     */
+    private static final int mergeDistance = 16;
+
+    /**
+     * границы прямоугольников: левая и верхняя включительно, правая и нижняя исключительно
+     */
+    private final int[] minX = new int[maxRegions];
+    private final int[] minY = new int[maxRegions];
+    private final int[] maxX = new int[maxRegions];
+    private final int[] maxY = new int[maxRegions];
+    private int count;
+
+    /**
+     * Удаляет все прямоугольники.
+     */
+    void clear() {
+        count = 0;
+    }
+
+    /**
+     * @return true, если перерисовывать нечего
+     */
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return количество отдельных прямоугольников
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Добавляет прямоугольник, объединяя его с близкими.
+     *
+     * @param x      левая граница
+     * @param y      верхняя граница
+     * @param width  ширина
+     * @param height высота
+     */
+    void add(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        int x0 = x;
+        int y0 = y;
+        int x1 = x + width;
+        int y1 = y + height;
+        // объединенный прямоугольник может оказаться рядом с другими, поэтому он добавляется заново
+        for (int i = 0; i < count; i++) {
+            if (x0 <= maxX[i] + mergeDistance && minX[i] <= x1 + mergeDistance
+                    && y0 <= maxY[i] + mergeDistance && minY[i] <= y1 + mergeDistance) {
+                x0 = Math.min(x0, minX[i]);
+                y0 = Math.min(y0, minY[i]);
+                x1 = Math.max(x1, maxX[i]);
+                y1 = Math.max(y1, maxY[i]);
+                removeAt(i);
+                i = -1;
+            }
+        }
+        if (count == maxRegions) {
+            int best = 0;
+            long bestGrowth = Long.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                long growth = area(Math.min(x0, minX[i]), Math.min(y0, minY[i]),
+                        Math.max(x1, maxX[i]), Math.max(y1, maxY[i]))
+                        - area(minX[i], minY[i], maxX[i], maxY[i]);
+                if (growth < bestGrowth) {
+                    best = i;
+                    bestGrowth = growth;
+                }
+            }
+            x0 = Math.min(x0, minX[best]);
+            y0 = Math.min(y0, minY[best]);
+            x1 = Math.max(x1, maxX[best]);
+            y1 = Math.max(y1, maxY[best]);
+            removeAt(best);
+        }
+        minX[count] = x0;
+        minY[count] = y0;
+        maxX[count] = x1;
+        maxY[count] = y1;
+        count++;
+    }
+
+    /**
+     * Добавляет квадрат с центром в указанной точке.
+     *
+     * @param x    координата X центра
+     * @param y    координата Y центра
+     * @param size сторона квадрата
+     */
+    void addSquare(int x, int y, int size) {
+        add(x - size / 2, y - size / 2, size, size);
+    }
+
+    /**
+     * Возвращает прямоугольник с указанным номером.
+     *
+     * @param i номер от 0 до {@link #size()}
+     * @return новый прямоугольник
+     */
+    Rectangle get(int i) {
+        return new Rectangle(minX[i], minY[i], maxX[i] - minX[i], maxY[i] - minY[i]);
+    }
+
+    /**
+     * @return суммарная площадь прямоугольников
+     */
+    long getArea() {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += area(minX[i], minY[i], maxX[i], maxY[i]);
+        }
+        return total;
+    }
+
+    /**
+     * @return прямоугольник, охватывающий все записанные, или пустой
+     */
+    Rectangle getBounds() {
+        if (count == 0) {
+            return new Rectangle();
+        }
+        int x0 = Integer.MAX_VALUE;
+        int y0 = Integer.MAX_VALUE;
+        int x1 = Integer.MIN_VALUE;
+        int y1 = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            x0 = Math.min(x0, minX[i]);
+            y0 = Math.min(y0, minY[i]);
+            x1 = Math.max(x1, maxX[i]);
+            y1 = Math.max(y1, maxY[i]);
+        }
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    private void removeAt(int i) {
+        count--;
+        minX[i] = minX[count];
+        minY[i] = minY[count];
+        maxX[i] = maxX[count];
+        maxY[i] = maxY[count];
+    }
+
+    private static long area(int x0, int y0, int x1, int y1) {
+        return (long) (x1 - x0) * (y1 - y0);
+    }
+}
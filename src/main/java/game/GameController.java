@@ -1,46 +1,62 @@
 package game;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 /**
- * Контроллер. Управляет игровым процессом, используя модель робота и визуализатор игры
+ * Контроллер. Управляет игровым процессом, используя модель робота.
+ * На каждом такте двигает всех роботов мира, в котором находится модель;
+ * окна игрового поля следят за миром сами через {@link RenderContext}.
+ * Частота тактов задается системным свойством {@code robots.tickRate}:
+ * число герц (например 100 или 1000) либо "max" для режима без ограничения.
  */
 public class GameController {
     private RobotModel robotModel;
-    private GameVisualizer gameVisualizer;
 
     /**
-     * Таймер для регулярного вызова метода moveRobot()
+     * Цикл симуляции с фиксированным шагом
      */
-    private final Timer timer = initTimer();
+    private final SimulationLoop simulationLoop;
 
     /**
-     * Инициализирует таймер для регулярного вызова метода moveRobot()
-     * @return новый объект Timer
+     * Поток, в котором выполняется цикл симуляции
      */
-    private static Timer initTimer() {
-        Timer timer = new Timer("events generator", true);
-        return timer;
-    }
+    private final Thread simulationThread;
 
     /**
      * Конструктор класса GameController
      *
      * @param robotModel  модель робота
-     * @param gameVisualizer  визуализатор игры
      */
-    public GameController(RobotModel robotModel, GameVisualizer gameVisualizer){
+    public GameController(RobotModel robotModel){
+        this(robotModel, SimulationClock.parseRate(System.getProperty("robots.tickRate", "100")));
+    }
+
+    /**
+     * Конструктор класса GameController с заданной частотой тактов
+     *
+     * @param robotModel  модель робота
+     * @param ticksPerSecond частота тактов, {@link SimulationClock#UNTHROTTLED} — без ограничения
+     */
+    public GameController(RobotModel robotModel, int ticksPerSecond){
         this.robotModel = robotModel;
-        this.gameVisualizer = gameVisualizer;
-        this.robotModel.addObserver(this.gameVisualizer);
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                robotModel.moveRobot();
-            }
-        }, 0, 10);
+        this.simulationLoop = new SimulationLoop(robotModel.getWorld(),
+                SimulationClock.atRate(ticksPerSecond));
+        this.simulationThread = new Thread(simulationLoop, "events generator");
+        this.simulationThread.setDaemon(true);
+        this.simulationThread.start();
     }
 
-}
+    /**
+     * Останавливает цикл симуляции.
+     */
+    public void stop() {
+        simulationLoop.stop();
+    }
 
+    /**
+     * Возвращает часы симуляции.
+     *
+     * @return часы симуляции
+     */
+    public SimulationClock getClock() {
+        return simulationLoop.getClock();
+    }
+}
@@ -6,52 +6,470 @@ import log.Logger;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.geom.AffineTransform;
-import java.util.Observable;
-import java.util.Observer;
+import java.awt.event.MouseWheelEvent;
+import java.util.Arrays;
 
 
 /**
  * Класс  представляет визуализацию игрового поля.
+ * Поле показывается через камеру {@link Viewport}: колесо мыши меняет увеличение,
+ * перетаскивание сдвигает камеру. Роботы вне видимой области не рисуются и даже не перебираются:
+ * кандидаты на отрисовку находятся по сеткам снимка мира и сетке нарисованных положений,
+ * а при увеличении меньше {@link #detailZoom} вместо изображений роботов рисуется растр плотности.
+ * Под роботами можно показать слой следов и карту занятости {@link TrailOverlay}:
+ * клавиши T и H переключают их, начальное состояние задается системным свойством
+ * {@code robots.overlay}, например "trails,heatmap".
  */
-public class GameVisualizer extends JPanel implements Observer {
+public class GameVisualizer extends JPanel implements WorldChangeListener {
+
+    /**
+     * увеличение, начиная с которого роботы рисуются изображениями, а не растром плотности
+     */
+    public static final double detailZoom = 0.5;
+
+    /**
+     * во сколько раз меняется увеличение за один щелчок колеса мыши
+     */
+    private static final double zoomStep = 1.1;
 
     private final RobotModel robotModel;
 
+    /**
+     * общий с другими окнами контекст отрисовки мира
+     */
+    private final RenderContext context;
+    private final Viewport viewport = new Viewport();
+    private final DensityRaster densityRaster = new DensityRaster();
+    private boolean trailsVisible;
+    private boolean heatmapVisible;
+
+    /**
+     * признак того, что окно показывает общий слой следов
+     */
+    private boolean overlayShown;
+
+    /**
+     * заранее повернутые изображения робота и цели для текущего увеличения, общие с другими окнами
+     */
+    private RobotSpriteCache spriteCache;
+
+    /**
+     * размеры изображений робота и цели на экране при текущем увеличении камеры
+     */
+    private int robotSize;
+    private int targetSize;
+
+    /**
+     * признак робота или цели, которые еще не нарисованы
+     */
+    private static final int notPainted = Integer.MIN_VALUE;
+
+    /**
+     * положение, направление и цель каждого робота в том виде, в котором они сейчас нарисованы
+     */
+    private int paintedCount;
+    private int[] paintedX = new int[0];
+    private int[] paintedY = new int[0];
+    private double[] paintedDirection = new double[0];
+    private int[] paintedTargetX = new int[0];
+    private int[] paintedTargetY = new int[0];
+
+    /**
+     * поколение камеры, в котором нарисованы робот и цель; нарисованное в прошлых поколениях
+     * считается не нарисованным, поэтому смена камеры не перебирает всех роботов
+     */
+    private int[] paintedGeneration = new int[0];
+    private int[] paintedTargetGeneration = new int[0];
+    private int generation;
+
+    /**
+     * нарисованные роботы и цели по координатам мира, при которых они нарисованы
+     */
+    private final SpatialGrid paintedRobots = new SpatialGrid(64);
+    private final SpatialGrid paintedTargets = new SpatialGrid(64);
 
     /**
-     * Создает новый визуализатор игры
+     * отметки роботов, уже обработанных в текущем проходе, чтобы робот, найденный
+     * в обеих сетках, обрабатывался один раз
+     */
+    private int[] visitMarks = new int[0];
+    private int visitStamp;
+
+    /**
+     * последняя нарисованная цель; у многих роботов бывает общая цель, и одну и ту же цель
+     * подряд рисуем один раз
+     */
+    private int drawnTargetX;
+    private int drawnTargetY;
+
+    /**
+     * области, которые нужно перерисовать в текущем кадре
+     */
+    private final DirtyRegions dirtyRegions = new DirtyRegions();
+
+    /**
+     * области, которые отрисовка не смогла обновить в своей области отсечения; они
+     * перерисовываются одним прямоугольником уже после нее
+     */
+    private final DirtyRegions deferredRegions = new DirtyRegions();
+    private boolean deferredRepaintQueued;
+    private final Runnable repaintDeferred = this::repaintDeferred;
+
+    /**
+     * счетчик перерисованных пикселей
+     */
+    private long repaintedPixels;
+    private long pixelWindowStartNanos = System.nanoTime();
+    private volatile long repaintedPixelsPerSecond;
+
+
+    /**
+     * Создает новый визуализатор игры с собственным контекстом отрисовки
      * @param robotModel модель робота, за изменениями которой следит визуализатор
      */
     public GameVisualizer(RobotModel robotModel) {
-        this.robotModel = robotModel;
-        this.robotModel.addObserver(this); // Регистрируем GameVisualizer как наблюдателя за изменениями в RobotModel
+        this(new RenderContext(robotModel));
+    }
+
+    /**
+     * Создает новый визуализатор игры, разделяющий контекст отрисовки с другими окнами
+     * @param context контекст отрисовки мира
+     */
+    public GameVisualizer(RenderContext context) {
+        this.context = context;
+        this.robotModel = context.getRobotModel();
+        updateSpriteSizes();
+
+        MouseAdapter mouseHandler = new MouseAdapter() {
+            private Point dragStart;
 
-        this.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                Logger.debug(LocalManager.getStringLocal("startRobotMessage"));
-                int adjustedX = e.getPoint().x;
-                int adjustedY = e.getPoint().y;
+                Logger.debug(() -> LocalManager.getStringLocal("startRobotMessage"));
+                int adjustedX = (int) viewport.toWorldX(e.getPoint().x);
+                int adjustedY = (int) viewport.toWorldY(e.getPoint().y);
                 robotModel.setTargetPosition(new Point(adjustedX, adjustedY));
-                repaint();
+            }
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
+                dragStart = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragStart != null) {
+                    viewport.pan(e.getX() - dragStart.x, e.getY() - dragStart.y);
+                    dragStart = e.getPoint();
+                    onViewportChanged();
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                viewport.zoomAt(e.getX(), e.getY(), Math.pow(zoomStep, -e.getPreciseWheelRotation()));
+                onViewportChanged();
+            }
+        };
+        this.addMouseListener(mouseHandler);
+        this.addMouseMotionListener(mouseHandler);
+        this.addMouseWheelListener(mouseHandler);
+
+        setFocusable(true);
+        this.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_T) {
+                    setTrailsVisible(!trailsVisible);
+                } else if (e.getKeyCode() == KeyEvent.VK_H) {
+                    setHeatmapVisible(!heatmapVisible);
+                }
             }
         });
+        String overlay = System.getProperty("robots.overlay", "");
+        setTrailsVisible(overlay.contains("trails"));
+        setHeatmapVisible(overlay.contains("heatmap"));
+    }
+
+    /**
+     * Показывает или скрывает следы движения роботов.
+     *
+     * @param visible показывать ли следы
+     */
+    public void setTrailsVisible(boolean visible) {
+        trailsVisible = visible;
+        updateOverlayRecording();
+    }
+
+    /**
+     * Показывает или скрывает карту занятости поля.
+     *
+     * @param visible показывать ли карту занятости
+     */
+    public void setHeatmapVisible(boolean visible) {
+        heatmapVisible = visible;
+        updateOverlayRecording();
+    }
+
+    /**
+     * Сообщает контексту, показывает ли окно слой следов: слой получает шаги мира,
+     * пока хотя бы одно показанное окно показывает следы или карту занятости.
+     */
+    private void updateOverlayRecording() {
+        boolean shown = (trailsVisible || heatmapVisible) && isDisplayable();
+        if (shown != overlayShown) {
+            context.setOverlayShown(shown);
+            overlayShown = shown;
+        }
+        repaint();
+    }
+
+    /**
+     * Подписывается на кадры мира, когда окно показано.
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        forgetPainted();
+        context.subscribe(this);
+        updateOverlayRecording();
+    }
+
+    /**
+     * Отписывается от кадров мира, когда окно закрыто.
+     */
+    @Override
+    public void removeNotify() {
+        context.unsubscribe(this);
+        if (overlayShown) {
+            context.setOverlayShown(false);
+            overlayShown = false;
+        }
+        super.removeNotify();
+    }
+
+    /**
+     * Возвращает камеру игрового поля.
+     *
+     * @return камера
+     */
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    /**
+     * Перерисовывает поле целиком после изменения камеры. Нарисованные положения
+     * относятся к старой камере, поэтому забываются.
+     */
+    public void onViewportChanged() {
+        updateSpriteSizes();
+        forgetPainted();
+        repaint();
+    }
+
+    /**
+     * Забывает нарисованные положения, например после смены камеры.
+     */
+    private void forgetPainted() {
+        generation++;
+    }
+
+    /**
+     * Выбирает общий набор изображений и размеры изображений для текущего увеличения.
+     */
+    private void updateSpriteSizes() {
+        double zoom = viewport.getZoom();
+        spriteCache = context.getSpriteCache(zoom);
+        robotSize = RobotSpriteCache.getRobotSize(zoom);
+        targetSize = RobotSpriteCache.getTargetSize(zoom);
+    }
+
+    /**
+     * Проверяет, рисуются ли роботы растром плотности при текущем увеличении.
+     */
+    private boolean isDensityMode() {
+        return viewport.getZoom() < detailZoom;
     }
 
 
     /**
-     * Переопределяет метод отрисовки компонента, чтобы нарисовать робота и цель.
+     * Переопределяет метод отрисовки компонента, чтобы нарисовать роботов мира и их цели.
+     * Состояние берется из согласованного снимка мира, поэтому координаты и направление
+     * всегда относятся к одному шагу.
+     *
+     * <p>Рисуется только область отсечения. Робот переносится в новое положение, только если
+     * и старое, и новое его изображение целиком попадают в эту область; иначе он остается
+     * на прежнем месте, а недостающая область перерисовывается уже после отрисовки.
+     * Перебираются только роботы и цели, найденные в области отсечения по сеткам нового
+     * и нарисованного положений, поэтому стоимость кадра не зависит от числа роботов вне ее.
+     * При мелком масштабе область отсечения заполняется растром плотности.
      * @param g объект Graphics для рисования
      */
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         Graphics2D g2d = (Graphics2D) g;
-        drawRobot(g2d, (int)robotModel.getX(), (int)robotModel.getY(), robotModel.getDirection());
-        drawTarget(g2d);
+        Rectangle clip = g2d.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        Rectangle visible = getVisibleRect();
+        long now = System.nanoTime();
+        countRepaintedPixels((long) clip.width * clip.height, now);
+
+        if (overlayShown) {
+            context.getTrailOverlay().paint(g2d, viewport, trailsVisible, heatmapVisible);
+        }
+        WorldSnapshot snapshot = context.getSnapshot();
+        double alpha = snapshot.getInterpolationAlpha(now);
+        if (isDensityMode()) {
+            densityRaster.paint(g2d, snapshot, alpha, viewport, clip.intersection(visible));
+            return;
+        }
+        int count = snapshot.getRobotCount();
+        for (int i = count; i < paintedCount; i++) {
+            if (isRobotPainted(i)) {
+                deferredRegions.addSquare(paintedX[i], paintedY[i], robotSize);
+            }
+            if (isTargetPainted(i)) {
+                deferredRegions.addSquare(paintedTargetX[i], paintedTargetY[i], targetSize);
+            }
+            paintedRobots.remove(i);
+            paintedTargets.remove(i);
+        }
+        setPaintedCount(count);
+
+        int margin = robotSize / 2 + 1;
+        double minX = viewport.toWorldX(clip.x - margin);
+        double minY = viewport.toWorldY(clip.y - margin);
+        double maxX = viewport.toWorldX(clip.x + clip.width + margin);
+        double maxY = viewport.toWorldY(clip.y + clip.height + margin);
+        nextVisit(count);
+        int found = snapshot.findRobots(minX, minY, maxX, maxY);
+        int[] robots = snapshot.getFoundRobots();
+        for (int k = 0; k < found; k++) {
+            paintRobot(g2d, snapshot, alpha, robots[k], clip, visible);
+        }
+        found = paintedRobots.query(minX, minY, maxX, maxY);
+        robots = paintedRobots.getFound();
+        for (int k = 0; k < found; k++) {
+            paintRobot(g2d, snapshot, alpha, robots[k], clip, visible);
+        }
+
+        margin = targetSize / 2 + 1;
+        minX = viewport.toWorldX(clip.x - margin);
+        minY = viewport.toWorldY(clip.y - margin);
+        maxX = viewport.toWorldX(clip.x + clip.width + margin);
+        maxY = viewport.toWorldY(clip.y + clip.height + margin);
+        nextVisit(count);
+        drawnTargetX = notPainted;
+        drawnTargetY = notPainted;
+        found = snapshot.findTargets(minX, minY, maxX, maxY);
+        int[] targets = snapshot.getFoundTargets();
+        for (int k = 0; k < found; k++) {
+            paintTarget(g2d, snapshot, targets[k], clip, visible);
+        }
+        found = paintedTargets.query(minX, minY, maxX, maxY);
+        targets = paintedTargets.getFound();
+        for (int k = 0; k < found; k++) {
+            paintTarget(g2d, snapshot, targets[k], clip, visible);
+        }
+        if (!deferredRegions.isEmpty() && !deferredRepaintQueued) {
+            deferredRepaintQueued = true;
+            EventQueue.invokeLater(repaintDeferred);
+        }
+    }
+
+    /**
+     * Рисует робота, если его старое или новое изображение задевает область отсечения.
+     * Робот переносится в новое положение, только если оба изображения целиком в ней.
+     */
+    private void paintRobot(Graphics2D g, WorldSnapshot snapshot, double alpha, int i,
+                            Rectangle clip, Rectangle visible) {
+        if (!firstVisit(i)) {
+            return;
+        }
+        double worldX = snapshot.getInterpolatedX(i, alpha);
+        double worldY = snapshot.getInterpolatedY(i, alpha);
+        int x = (int)viewport.toScreenX(worldX);
+        int y = (int)viewport.toScreenY(worldY);
+        double direction = snapshot.getInterpolatedDirection(i, alpha);
+        boolean painted = isRobotPainted(i);
+        if (!painted || x != paintedX[i] || y != paintedY[i] || direction != paintedDirection[i]) {
+            if (!containsRobot(clip, visible, x, y)
+                    || (painted && !containsRobot(clip, visible, paintedX[i], paintedY[i]))) {
+                deferredRegions.addSquare(x, y, robotSize);
+                if (!painted) {
+                    return;
+                }
+                deferredRegions.addSquare(paintedX[i], paintedY[i], robotSize);
+                x = paintedX[i];
+                y = paintedY[i];
+                direction = paintedDirection[i];
+            } else {
+                paintedX[i] = x;
+                paintedY[i] = y;
+                paintedDirection[i] = direction;
+                paintedGeneration[i] = generation;
+                paintedRobots.put(i, worldX, worldY);
+            }
+        }
+        if (clip.intersects(x - robotSize / 2, y - robotSize / 2, robotSize, robotSize)) {
+            drawRobot(g, x, y, direction);
+        }
+    }
+
+    /**
+     * Рисует цель робота по тем же правилам, что и самого робота.
+     */
+    private void paintTarget(Graphics2D g, WorldSnapshot snapshot, int i, Rectangle clip, Rectangle visible) {
+        if (!firstVisit(i)) {
+            return;
+        }
+        int worldX = snapshot.getTargetX(i);
+        int worldY = snapshot.getTargetY(i);
+        int targetX = (int)viewport.toScreenX(worldX);
+        int targetY = (int)viewport.toScreenY(worldY);
+        boolean painted = isTargetPainted(i);
+        if (!painted || targetX != paintedTargetX[i] || targetY != paintedTargetY[i]) {
+            if (!containsTarget(clip, visible, targetX, targetY)
+                    || (painted && !containsTarget(clip, visible, paintedTargetX[i], paintedTargetY[i]))) {
+                deferredRegions.addSquare(targetX, targetY, targetSize);
+                if (!painted) {
+                    return;
+                }
+                deferredRegions.addSquare(paintedTargetX[i], paintedTargetY[i], targetSize);
+                targetX = paintedTargetX[i];
+                targetY = paintedTargetY[i];
+            } else {
+                paintedTargetX[i] = targetX;
+                paintedTargetY[i] = targetY;
+                paintedTargetGeneration[i] = generation;
+                paintedTargets.put(i, worldX, worldY);
+            }
+        }
+        if ((targetX != drawnTargetX || targetY != drawnTargetY)
+                && clip.intersects(targetX - targetSize / 2, targetY - targetSize / 2, targetSize, targetSize)) {
+            drawTarget(g, targetX, targetY);
+            drawnTargetX = targetX;
+            drawnTargetY = targetY;
+        }
+    }
+
+    /**
+     * Сбрасывает общие изображения роботов при смене оформления.
+     */
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        if (context != null) {
+            context.invalidateSprites();
+        }
     }
 
     /**
@@ -62,71 +480,266 @@ public class GameVisualizer extends JPanel implements Observer {
      * @param direction направление робота в радианах
      */
     private void drawRobot(Graphics2D g, int x, int y, double direction) {
-        double robotDirection = robotModel.getDirection();
-
-        int robotCenterX = (int)robotModel.getX();
-        int robotCenterY = (int)robotModel.getY();
-        AffineTransform t = AffineTransform.getRotateInstance(robotDirection, robotCenterX, robotCenterY);
-        g.setTransform(t);
-        g.setColor(Color.MAGENTA);
-        fillOval(g, robotCenterX, robotCenterY, 30, 10);
-        g.setColor(Color.BLACK);
-        drawOval(g, robotCenterX, robotCenterY, 30, 10);
-        g.setColor(Color.WHITE);
-        fillOval(g, robotCenterX + 10, robotCenterY, 5, 5);
-        g.setColor(Color.BLACK);
-        drawOval(g, robotCenterX + 10, robotCenterY, 5, 5);
+        spriteCache.drawRobot(g, x, y, direction, robotSize);
     }
 
 
     /**
      * Рисует цель в указанных координатах.
      * @param g объект Graphics2D для рисования
+     * @param targetX координата X цели
+     * @param targetY координата Y цели
      */
-    private void drawTarget(Graphics2D g) {
-        int targetX = (int)robotModel.getTargetX();
-        int targetY = (int)robotModel.getTargetY();
+    private void drawTarget(Graphics2D g, int targetX, int targetY) {
+        spriteCache.drawTarget(g, targetX, targetY, targetSize);
+    }
+
+    /**
+     * Обновляет визуализацию при изменениях в мире робота.
+     * Перерисовываются только области, в которых роботы и цели были нарисованы и в которых
+     * они могут оказаться до следующего шага; близкие области объединяются, а далекие
+     * перерисовываются по отдельности (см. {@link DirtyRegions}). Проверяются только роботы,
+     * найденные по сеткам в видимой области. Растр плотности и слой следов
+     * меняются по всему полю, поэтому с ними перерисовывается вся видимая область.
+     * @param world   изменившийся мир
+     * @param version версия снимка мира, который можно забрать в этом кадре
+     */
+    @Override
+    public void onWorldChanged(RobotWorld world, long version) {
+        if (isDensityMode() || overlayShown) {
+            repaint();
+            return;
+        }
+        WorldSnapshot snapshot = context.getSnapshot();
+        int count = snapshot.getRobotCount();
+        dirtyRegions.clear();
+        for (int i = count; i < paintedCount; i++) {
+            if (isRobotPainted(i)) {
+                addRobotDirty(paintedX[i], paintedY[i]);
+            }
+            if (isTargetPainted(i)) {
+                addTargetDirty(paintedTargetX[i], paintedTargetY[i]);
+            }
+        }
+        Rectangle visible = getVisibleRect();
+
+        int margin = robotSize / 2 + 1;
+        double minX = viewport.toWorldX(visible.x - margin);
+        double minY = viewport.toWorldY(visible.y - margin);
+        double maxX = viewport.toWorldX(visible.x + visible.width + margin);
+        double maxY = viewport.toWorldY(visible.y + visible.height + margin);
+        nextVisit(count);
+        int found = snapshot.findRobots(minX, minY, maxX, maxY);
+        int[] robots = snapshot.getFoundRobots();
+        for (int k = 0; k < found; k++) {
+            addChangedRobot(snapshot, robots[k], count);
+        }
+        found = paintedRobots.query(minX, minY, maxX, maxY);
+        robots = paintedRobots.getFound();
+        for (int k = 0; k < found; k++) {
+            addChangedRobot(snapshot, robots[k], count);
+        }
 
-        AffineTransform t = AffineTransform.getRotateInstance(0, 0, 0);
-        g.setTransform(t);
-        g.setColor(Color.GREEN);
-        fillOval(g, targetX, targetY, 5, 5);
-        g.setColor(Color.BLACK);
-        drawOval(g, targetX, targetY, 5, 5);
+        margin = targetSize / 2 + 1;
+        minX = viewport.toWorldX(visible.x - margin);
+        minY = viewport.toWorldY(visible.y - margin);
+        maxX = viewport.toWorldX(visible.x + visible.width + margin);
+        maxY = viewport.toWorldY(visible.y + visible.height + margin);
+        nextVisit(count);
+        found = snapshot.findTargets(minX, minY, maxX, maxY);
+        int[] targets = snapshot.getFoundTargets();
+        for (int k = 0; k < found; k++) {
+            addChangedTarget(snapshot, targets[k], count);
+        }
+        found = paintedTargets.query(minX, minY, maxX, maxY);
+        targets = paintedTargets.getFound();
+        for (int k = 0; k < found; k++) {
+            addChangedTarget(snapshot, targets[k], count);
+        }
+        repaintDirty(visible);
     }
 
     /**
-     * Заполняет овал в указанных координатах и размерах.
-     * @param g объект Graphics для рисования
-     * @param centerX координата X центра овала
-     * @param centerY координата Y центра овала
-     * @param diam1 диаметр овала по оси X
-     * @param diam2 диаметр овала по оси Y
+     * Добавляет к грязной области нарисованное и новые положения робота, если он изменился.
      */
-    private static void fillOval(Graphics g, int centerX, int centerY, int diam1, int diam2) {
-        g.fillOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    private void addChangedRobot(WorldSnapshot snapshot, int i, int count) {
+        if (i >= count || !firstVisit(i)) {
+            return;
+        }
+        boolean painted = isRobotPainted(i);
+        int x = (int)viewport.toScreenX(snapshot.getX(i));
+        int y = (int)viewport.toScreenY(snapshot.getY(i));
+        if (!painted || x != paintedX[i] || y != paintedY[i] || snapshot.getDirection(i) != paintedDirection[i]) {
+            addRobotDirty(x, y);
+            addRobotDirty((int)viewport.toScreenX(snapshot.getInterpolatedX(i, 0)),
+                    (int)viewport.toScreenY(snapshot.getInterpolatedY(i, 0)));
+            if (painted) {
+                addRobotDirty(paintedX[i], paintedY[i]);
+            }
+        }
     }
 
     /**
-     * Рисует контур овала в указанных координатах и размерах.
-     * @param g объект Graphics для рисования
-     * @param centerX координата X центра овала
-     * @param centerY координата Y центра овала
-     * @param diam1 диаметр овала по оси X
-     * @param diam2 диаметр овала по оси Y
+     * Добавляет к грязной области нарисованное и новое положения цели, если она изменилась.
      */
-    private static void drawOval(Graphics g, int centerX, int centerY, int diam1, int diam2) {
-        g.drawOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    private void addChangedTarget(WorldSnapshot snapshot, int i, int count) {
+        if (i >= count || !firstVisit(i)) {
+            return;
+        }
+        boolean painted = isTargetPainted(i);
+        int targetX = (int)viewport.toScreenX(snapshot.getTargetX(i));
+        int targetY = (int)viewport.toScreenY(snapshot.getTargetY(i));
+        if (!painted || targetX != paintedTargetX[i] || targetY != paintedTargetY[i]) {
+            addTargetDirty(targetX, targetY);
+            if (painted) {
+                addTargetDirty(paintedTargetX[i], paintedTargetY[i]);
+            }
+        }
     }
 
-/**
- * Обновляет визуализацию при изменениях в модели робота.
- * @param o   объект Observable, который изменился
- */
-    @Override
-    public void update(Observable o, Object arg) {
-        if (o instanceof RobotModel) {
-            repaint();
+    private boolean isRobotPainted(int i) {
+        return i < paintedCount && paintedGeneration[i] == generation && paintedX[i] != notPainted;
+    }
+
+    private boolean isTargetPainted(int i) {
+        return i < paintedCount && paintedTargetGeneration[i] == generation && paintedTargetX[i] != notPainted;
+    }
+
+    /**
+     * Начинает новый проход по роботам: ни один робот еще не обработан.
+     */
+    private void nextVisit(int count) {
+        if (visitMarks.length < count) {
+            visitMarks = Arrays.copyOf(visitMarks, Math.max(count, visitMarks.length * 2));
+        }
+        if (++visitStamp == 0) {
+            Arrays.fill(visitMarks, 0);
+            visitStamp = 1;
+        }
+    }
+
+    /**
+     * Отмечает робота обработанным в текущем проходе.
+     *
+     * @return true, если робот встретился в проходе впервые
+     */
+    private boolean firstVisit(int i) {
+        if (visitMarks[i] == visitStamp) {
+            return false;
+        }
+        visitMarks[i] = visitStamp;
+        return true;
+    }
+
+    /**
+     * Возвращает количество пикселей, перерисованных за последнюю секунду.
+     *
+     * @return перерисованных пикселей в секунду
+     */
+    public long getRepaintedPixelsPerSecond() {
+        return repaintedPixelsPerSecond;
+    }
+
+    /**
+     * Учитывает перерисованную область в счетчике пикселей.
+     */
+    private void countRepaintedPixels(long pixels, long now) {
+        repaintedPixels += pixels;
+        long elapsed = now - pixelWindowStartNanos;
+        if (elapsed >= 1_000_000_000L) {
+            repaintedPixelsPerSecond = repaintedPixels * 1_000_000_000L / elapsed;
+            repaintedPixels = 0;
+            pixelWindowStartNanos = now;
+        }
+    }
+
+    /**
+     * Меняет количество отслеживаемых роботов; новые роботы считаются еще не нарисованными.
+     */
+    private void setPaintedCount(int count) {
+        if (count > paintedX.length) {
+            int capacity = Math.max(count, paintedX.length * 2);
+            paintedX = Arrays.copyOf(paintedX, capacity);
+            paintedY = Arrays.copyOf(paintedY, capacity);
+            paintedDirection = Arrays.copyOf(paintedDirection, capacity);
+            paintedTargetX = Arrays.copyOf(paintedTargetX, capacity);
+            paintedTargetY = Arrays.copyOf(paintedTargetY, capacity);
+            paintedGeneration = Arrays.copyOf(paintedGeneration, capacity);
+            paintedTargetGeneration = Arrays.copyOf(paintedTargetGeneration, capacity);
+        }
+        for (int i = paintedCount; i < count; i++) {
+            paintedX[i] = notPainted;
+            paintedTargetX[i] = notPainted;
+        }
+        paintedCount = count;
+    }
+
+    /**
+     * Проверяет, что видимая часть изображения робота целиком попадает в область отсечения.
+     */
+    private boolean containsRobot(Rectangle clip, Rectangle visible, int x, int y) {
+        return containsVisible(clip, visible, x, y, robotSize);
+    }
+
+    /**
+     * Проверяет, что видимая часть изображения цели целиком попадает в область отсечения.
+     */
+    private boolean containsTarget(Rectangle clip, Rectangle visible, int x, int y) {
+        return containsVisible(clip, visible, x, y, targetSize);
+    }
+
+    /**
+     * Проверяет, что видимая часть квадрата с центром в указанной точке целиком попадает в область
+     * отсечения. Части за пределами видимой области не рисуются никогда, поэтому не учитываются.
+     */
+    private static boolean containsVisible(Rectangle clip, Rectangle visible, int x, int y, int size) {
+        int half = size / 2;
+        int minX = Math.max(x - half, visible.x);
+        int minY = Math.max(y - half, visible.y);
+        int maxX = Math.min(x - half + size, visible.x + visible.width);
+        int maxY = Math.min(y - half + size, visible.y + visible.height);
+        return minX >= maxX || minY >= maxY || clip.contains(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    private void addRobotDirty(int x, int y) {
+        dirtyRegions.addSquare(x, y, robotSize);
+    }
+
+    private void addTargetDirty(int x, int y) {
+        dirtyRegions.addSquare(x, y, targetSize);
+    }
+
+    /**
+     * Перерисовывает области кадра. Менеджер перерисовки объединил бы несколько запросов
+     * к одному компоненту в один охватывающий прямоугольник, поэтому каждая область
+     * рисуется сразу, своим вызовом {@link #paintImmediately}. Если областей набралось
+     * много или они покрывают больше половины видимой области, вся их совокупность
+     * перерисовывается одним прямоугольником.
+     */
+    private void repaintDirty(Rectangle visible) {
+        if (dirtyRegions.isEmpty()) {
+            return;
+        }
+        if (dirtyRegions.size() == DirtyRegions.maxRegions
+                || dirtyRegions.getArea() * 2 > (long) visible.width * visible.height) {
+            repaint(dirtyRegions.getBounds());
+        } else {
+            for (int i = 0; i < dirtyRegions.size(); i++) {
+                paintImmediately(dirtyRegions.get(i));
+            }
+        }
+        dirtyRegions.clear();
+    }
+
+    /**
+     * Перерисовывает области, которые не удалось обновить при отрисовке, одним прямоугольником,
+     * чтобы старое и новое изображения робота попали в одну область отсечения.
+     */
+    private void repaintDeferred() {
+        deferredRepaintQueued = false;
+        if (!deferredRegions.isEmpty()) {
+            repaint(deferredRegions.getBounds());
+            deferredRegions.clear();
         }
     }
 
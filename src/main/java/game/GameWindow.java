@@ -13,24 +13,33 @@ import javax.swing.*;
 public class GameWindow extends JInternalFrame implements LocalManagerInterface
 {
     private final GameVisualizer visualizer;
-    private RobotModel robotModel;
 
     /**
-     * Создает новый экземпляр GameWindow.
+     * Создает новый экземпляр GameWindow со своей камерой.
+     *
+     * @param context контекст отрисовки мира, общий для всех игровых окон
      */
-    public GameWindow(RobotModel robotModel)
+    public GameWindow(RenderContext context)
     {
         super(LocalManager.getStringLocal("playingField"), true, true, true, true);
-        this.robotModel = robotModel;
-        CoordinatesWindow robotCoordinatesDialog = new CoordinatesWindow(this.robotModel);
+        CoordinatesWindow robotCoordinatesDialog = new CoordinatesWindow(context);
         add(robotCoordinatesDialog, BorderLayout.NORTH);
-        visualizer = new GameVisualizer(robotModel);
+        visualizer = new GameVisualizer(context);
         JPanel panel = new JPanel(new BorderLayout());
         panel.add(visualizer, BorderLayout.CENTER);
         getContentPane().add(panel);
         pack();
     }
 
+    /**
+     * Возвращает визуализатор игрового поля этого окна.
+     *
+     * @return визуализатор
+     */
+    public GameVisualizer getVisualizer() {
+        return visualizer;
+    }
+
     @Override
     public void localization() {
         setTitle(LocalManager.getStringLocal("playingField"));
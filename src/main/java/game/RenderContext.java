@@ -0,0 +1,191 @@
+package game;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Общий для всех окон контекст отрисовки одного мира роботов. Сколько бы окон ни смотрело
+ * на мир, изменения отслеживает один {@link RenderScheduler}, снимок мира забирается один раз
+ * за кадр, изображения роботов строятся один раз для каждого увеличения, а слой следов
+ * получает шаги мира один раз. Поэтому работа симуляции и подготовка кадра не зависят
+ * от числа открытых окон; у каждого окна остается только своя камера.
+ *
+ * <p>Контекст — единственный читатель снимков мира в потоке обработки событий:
+ * окна и панели получают снимок через {@link #getSnapshot()}, а не через модель.
+ */
+public class RenderContext implements WorldChangeListener {
+
+    /**
+     * сколько наборов изображений для разных увеличений хранится одновременно
+     */
+    private static final int maxSpriteCaches = 4;
+
+    /**
+     * во сколько раз отличаются увеличения соседних наборов изображений
+     */
+    private static final double spriteZoomStep = Math.sqrt(2);
+
+    private final RobotModel robotModel;
+    private final RenderScheduler renderScheduler;
+    private final CopyOnWriteArrayList<WorldChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final TrailOverlay trailOverlay = new TrailOverlay();
+
+    /**
+     * наборы изображений по уровню увеличения; реже всего использованный вытесняется первым
+     */
+    private final Map<Integer, RobotSpriteCache> spriteCaches =
+            new LinkedHashMap<>(maxSpriteCaches, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, RobotSpriteCache> eldest) {
+                    return size() > maxSpriteCaches;
+                }
+            };
+
+    /**
+     * снимок мира текущего кадра, null — еще не забирался
+     */
+    private WorldSnapshot snapshot;
+
+    /**
+     * количество окон, показывающих слой следов
+     */
+    private int overlayUsers;
+
+    /**
+     * Создает контекст отрисовки мира, в котором находится робот.
+     *
+     * @param robotModel модель робота
+     */
+    public RenderContext(RobotModel robotModel) {
+        this.robotModel = robotModel;
+        this.renderScheduler = new RenderScheduler(robotModel.getWorld());
+    }
+
+    /**
+     * Возвращает модель робота.
+     *
+     * @return модель робота
+     */
+    public RobotModel getRobotModel() {
+        return robotModel;
+    }
+
+    /**
+     * Возвращает мир роботов.
+     *
+     * @return мир роботов
+     */
+    public RobotWorld getWorld() {
+        return robotModel.getWorld();
+    }
+
+    /**
+     * Возвращает планировщик кадров.
+     *
+     * @return планировщик кадров
+     */
+    public RenderScheduler getRenderScheduler() {
+        return renderScheduler;
+    }
+
+    /**
+     * Подписывает окно на кадры. Планировщик работает, пока есть хотя бы один подписчик.
+     *
+     * @param listener слушатель, вызываемый в потоке обработки событий
+     */
+    public void subscribe(WorldChangeListener listener) {
+        if (listeners.addIfAbsent(listener) && listeners.size() == 1) {
+            renderScheduler.subscribe(this);
+        }
+    }
+
+    /**
+     * Отписывает окно от кадров.
+     *
+     * @param listener слушатель
+     */
+    public void unsubscribe(WorldChangeListener listener) {
+        if (listeners.remove(listener) && listeners.isEmpty()) {
+            renderScheduler.unsubscribe(this);
+        }
+    }
+
+    /**
+     * Забирает снимок мира один раз за кадр и передает кадр всем окнам.
+     *
+     * @param world   изменившийся мир
+     * @param version версия снимка мира, который можно забрать в этом кадре
+     */
+    @Override
+    public void onWorldChanged(RobotWorld world, long version) {
+        snapshot = robotModel.acquireSnapshot();
+        for (WorldChangeListener listener : listeners) {
+            listener.onWorldChanged(world, version);
+        }
+    }
+
+    /**
+     * Возвращает снимок мира текущего кадра. Если ни одно окно не подписано на кадры,
+     * снимок забирается заново при каждом обращении. Вызывается только потоком обработки событий.
+     *
+     * @return согласованный снимок мира
+     */
+    public WorldSnapshot getSnapshot() {
+        if (snapshot == null || listeners.isEmpty()) {
+            snapshot = robotModel.acquireSnapshot();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Возвращает общий набор изображений роботов для указанного увеличения. Увеличения
+     * округляются вверх до степени √2, поэтому щелчки колеса мыши между соседними уровнями
+     * используют один набор, а изображения при выводе только уменьшаются.
+     *
+     * @param zoom увеличение камеры
+     * @return набор изображений, построенный для ближайшего уровня не меньше zoom
+     */
+    public RobotSpriteCache getSpriteCache(double zoom) {
+        int level = (int) Math.ceil(Math.log(zoom) / Math.log(spriteZoomStep) - 1e-9);
+        return spriteCaches.computeIfAbsent(level, key -> {
+            RobotSpriteCache cache = new RobotSpriteCache();
+            cache.setZoom(Math.pow(spriteZoomStep, key));
+            return cache;
+        });
+    }
+
+    /**
+     * Сбрасывает все изображения роботов, например при смене оформления.
+     */
+    public void invalidateSprites() {
+        for (RobotSpriteCache cache : spriteCaches.values()) {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * Возвращает общий слой следов и карты занятости.
+     *
+     * @return слой следов
+     */
+    public TrailOverlay getTrailOverlay() {
+        return trailOverlay;
+    }
+
+    /**
+     * Отмечает, что окно начало или перестало показывать слой следов. Слой получает шаги мира,
+     * пока его показывает хотя бы одно окно.
+     *
+     * @param shown показывает ли окно слой
+     */
+    public void setOverlayShown(boolean shown) {
+        int users = overlayUsers + (shown ? 1 : -1);
+        if (overlayUsers == 0 && users > 0) {
+            getWorld().addStepObserver(trailOverlay);
+        } else if (overlayUsers > 0 && users == 0) {
+            getWorld().removeStepObserver(trailOverlay);
+        }
+        overlayUsers = users;
+    }
+}
@@ -0,0 +1,234 @@
+package game;
+
+import java.awt.DisplayMode;
+import java.awt.EventQueue;
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Планировщик кадров, не связанный с тактами симуляции. Отдельный поток с заданной частотой
+ * кадров проверяет версию последнего опубликованного снимка мира и, если появился новый снимок,
+ * передает в поток обработки событий один кадр: уведомляет подписчиков, которые запрашивают
+ * перерисовку. Версия берется из снимка, а не из мира, потому что мир меняет версию раньше,
+ * чем публикует снимок с ней; иначе кадр мог бы забрать предыдущий снимок, а следующего
+ * кадра, если мир затих, уже не было бы.
+ *
+ * <p>Пока предыдущий кадр не отрисован, новый не отправляется: если поток обработки событий
+ * перегружен, кадры пропускаются, а не копятся в очереди. Кадр без изменений мира тоже
+ * не отправляется. Поэтому очередь событий не переполняется, даже если симуляция идет
+ * с частотой 1 кГц или без ограничения.
+ *
+ * <p>Частота кадров задается системным свойством {@code robots.fps}: число кадров в секунду
+ * (например 30 или 60) либо "vsync" — частота обновления экрана с синхронизацией
+ * вывода после каждого кадра.
+ */
+public class RenderScheduler {
+
+    /**
+     * признак режима с частотой обновления экрана
+     */
+    public static final int VSYNC = 0;
+
+    /**
+     * частота кадров, если частоту обновления экрана узнать не удалось
+     */
+    private static final int fallbackRefreshRate = 60;
+
+    private final RobotWorld world;
+    private final long frameNanos;
+    private final boolean vsync;
+    private final CopyOnWriteArrayList<WorldChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * признак кадра, отправленного в поток обработки событий и еще не отрисованного
+     */
+    private final AtomicBoolean frameInFlight = new AtomicBoolean();
+    private final Runnable deliverFrame = this::deliverFrame;
+    private final Runnable completeFrame = this::completeFrame;
+
+    /**
+     * версия снимка, для которой последний раз отправлялся кадр; пишет только поток планировщика
+     */
+    private long lastVersion = -1;
+
+    /**
+     * версия снимка, передаваемая подписчикам в отправленном кадре
+     */
+    private volatile long frameVersion;
+
+    private volatile long deliveredFrames;
+    private volatile long skippedFrames;
+    private Thread thread;
+
+    /**
+     * Создает планировщик с частотой кадров из системного свойства {@code robots.fps} (по умолчанию 60).
+     *
+     * @param world мир роботов
+     */
+    public RenderScheduler(RobotWorld world) {
+        this(world, parseFrameRate(System.getProperty("robots.fps", "60")));
+    }
+
+    /**
+     * Создает планировщик с указанной частотой кадров.
+     *
+     * @param world           мир роботов
+     * @param framesPerSecond частота кадров, {@link #VSYNC} — частота обновления экрана
+     */
+    public RenderScheduler(RobotWorld world, int framesPerSecond) {
+        if (framesPerSecond < 0) {
+            throw new IllegalArgumentException("Frame rate must not be negative: " + framesPerSecond);
+        }
+        this.world = world;
+        this.vsync = framesPerSecond == VSYNC;
+        this.frameNanos = 1_000_000_000L / (vsync ? displayRefreshRate() : framesPerSecond);
+    }
+
+    /**
+     * Разбирает частоту кадров из строки: число кадров в секунду либо "vsync".
+     *
+     * @param value строковое значение, например "30", "60" или "vsync"
+     * @return частота кадров в секунду или {@link #VSYNC}
+     */
+    public static int parseFrameRate(String value) {
+        if ("vsync".equalsIgnoreCase(value)) {
+            return VSYNC;
+        }
+        int rate = Integer.parseInt(value.trim());
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive: " + value);
+        }
+        return rate;
+    }
+
+    /**
+     * Возвращает частоту обновления основного экрана.
+     */
+    private static int displayRefreshRate() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return fallbackRefreshRate;
+        }
+        int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDisplayMode().getRefreshRate();
+        return rate == DisplayMode.REFRESH_RATE_UNKNOWN ? fallbackRefreshRate : rate;
+    }
+
+    /**
+     * Подписывает слушателя на кадры. Поток планировщика запускается при появлении первого подписчика.
+     *
+     * @param listener слушатель, вызываемый в потоке обработки событий
+     */
+    public synchronized void subscribe(WorldChangeListener listener) {
+        listeners.add(listener);
+        if (thread == null) {
+            lastVersion = -1;
+            thread = new Thread(this::run, "render scheduler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Отписывает слушателя. Поток планировщика останавливается, когда подписчиков не осталось.
+     *
+     * @param listener слушатель
+     */
+    public synchronized void unsubscribe(WorldChangeListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty() && thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * Цикл планировщика. Кадры отсчитываются от начала работы; если поток опоздал
+     * больше чем на кадр, пропущенные кадры не наверстываются.
+     */
+    private void run() {
+        long nextFrame = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            long now = System.nanoTime();
+            if (now < nextFrame) {
+                LockSupport.parkNanos(nextFrame - now);
+                continue;
+            }
+            nextFrame += frameNanos;
+            if (nextFrame < now) {
+                nextFrame = now + frameNanos;
+            }
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * Отправляет кадр в поток обработки событий, если опубликован новый снимок и предыдущий
+     * кадр уже отрисован.
+     */
+    private void scheduleFrame() {
+        long version = world.getPublishedVersion();
+        if (version == lastVersion) {
+            return;
+        }
+        if (!frameInFlight.compareAndSet(false, true)) {
+            skippedFrames++;
+            return;
+        }
+        lastVersion = version;
+        frameVersion = version;
+        EventQueue.invokeLater(deliverFrame);
+    }
+
+    /**
+     * Уведомляет подписчиков о кадре. Перерисовка, которую они запрашивают, попадает в очередь
+     * событий раньше завершения кадра, поэтому следующий кадр отправляется только после нее.
+     */
+    private void deliverFrame() {
+        long version = frameVersion;
+        for (WorldChangeListener listener : listeners) {
+            listener.onWorldChanged(world, version);
+        }
+        EventQueue.invokeLater(completeFrame);
+    }
+
+    /**
+     * Завершает кадр после перерисовки и разрешает отправку следующего.
+     */
+    private void completeFrame() {
+        if (vsync) {
+            Toolkit.getDefaultToolkit().sync();
+        }
+        deliveredFrames++;
+        frameInFlight.set(false);
+    }
+
+    /**
+     * Возвращает длительность кадра.
+     *
+     * @return длительность кадра в наносекундах
+     */
+    public long getFrameNanos() {
+        return frameNanos;
+    }
+
+    /**
+     * Возвращает количество отрисованных кадров.
+     *
+     * @return количество кадров
+     */
+    public long getDeliveredFrames() {
+        return deliveredFrames;
+    }
+
+    /**
+     * Возвращает количество кадров, пропущенных из-за того, что предыдущий кадр еще не отрисован.
+     *
+     * @return количество пропущенных кадров
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+}
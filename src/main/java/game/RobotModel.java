@@ -1,172 +1,72 @@
 package game;
 
-import locale.LocalManager;
-import log.Logger;
-
 import java.awt.*;
-import java.util.Observable;
-
-public class RobotModel extends Observable {
-
-    /**
-     * позиция робота по координате x
-     */
-    private double positionX;
-
-    /**
-     * позиция робота по координате y
-     */
-    private double positionY;
-
-    /**
-     * направление робота
-     */
-    private double direction;
 
-    /**
-     * позиция цели по координате x
-     */
-    private volatile int targetPositionX = 150;
-    /**
-     * позиция цели по координате y
-     */
-    private volatile int targetPositionY = 100;
+/**
+ * Модель одного робота. Является представлением робота с заданным индексом
+ * в мире {@link RobotWorld}, само состояние хранится в массивах мира.
+ * Об изменениях сообщает версия мира: окна следят за ней через общий {@link RenderContext},
+ * в котором {@link RenderScheduler} опрашивает версию с частотой кадров.
+ */
+public class RobotModel {
 
     /**
-     * максималная скорость перемещения робота
+     * мир, в котором хранится состояние робота
      */
-    private static final double maxVelocity = 0.1;
+    private final RobotWorld world;
 
     /**
-     * максимальная скорость поворота робота
+     * индекс робота в мире
      */
-    private static final double maxAngularVelocity = 0.003;
+    private final int index;
 
 
     /**
-     * Создает новый экземпляр RobotModel с указанной начальной позицией.
+     * Создает новый экземпляр RobotModel с указанной начальной позицией
+     * в отдельном мире из одного робота.
      * @param initialPositionX начальная координата X
      * @param initialPositionY начальная координата Y
      */
     public RobotModel(double initialPositionX, double initialPositionY) {
-        this.positionX = initialPositionX;
-        this.positionY = initialPositionY;
+        this.world = new RobotWorld(1);
+        this.index = world.addRobot(initialPositionX, initialPositionY);
     }
 
-
     /**
-     * Вычисляет расстояние между двумя точками.
-     *
-     * @param x1 координата X первой точки
-     * @param y1 координата Y первой точки
-     * @param x2 координата X второй точки
-     * @param y2 координата Y второй точки
-     * @return расстояние между точками
+     * Создает представление робота с указанным индексом в мире.
+     * @param world мир роботов
+     * @param index индекс робота в мире
      */
-    private static double distance(double x1, double y1, double x2, double y2) {
-        double diffX = x1 - x2;
-        double diffY = y1 - y2;
-        return Math.sqrt(diffX * diffX + diffY * diffY);
+    public RobotModel(RobotWorld world, int index) {
+        this.world = world;
+        this.index = index;
     }
 
     /**
-     * Вычисляет угол между двумя точками.
-     *
-     * @param fromX координата X начальной точки
-     * @param fromY координата Y начальной точки
-     * @param toX   координата X конечной точки
-     * @param toY   координата Y конечной точки
-     * @return угол между точками в радианах
+     * Получает мир, в котором находится робот.
+     * @return мир роботов
      */
-    private static double angleTo(double fromX, double fromY, double toX, double toY) {
-        double diffX = toX - fromX;
-        double diffY = toY - fromY;
-        return asNormalizedRadians(Math.atan2(diffY, diffX));
+    public RobotWorld getWorld() {
+        return world;
     }
 
-
     /**
-     * Приводит угол к диапазону от 0 до 2π радиан.
-     * @param angle угол для нормализации
-     * @return нормализованный угол
+     * Получает индекс робота в мире.
+     * @return индекс робота
      */
-    private static double asNormalizedRadians(double angle) {
-        while (angle < 0) {
-            angle += 2 * Math.PI;
-        }
-        while (angle >= 2 * Math.PI) {
-            angle -= 2 * Math.PI;
-        }
-        return angle;
+    public int getIndex() {
+        return index;
     }
 
     /**
-     * Обновляет позицию и направление робота.
+     * Обновляет позицию и направление робота. Изменение передается командой
+     * и применяется потоком симуляции в начале следующего такта.
      * @param newX новая координата X
      * @param newY новая координата Y
      * @param newDirect новое направление в радианах
      */
     public void updatePosition(double newX, double newY, double newDirect) {
-        this.positionX = newX;
-        this.positionY = newY;
-        this.direction = newDirect;
-
-        setChanged();
-        notifyObservers();
-    }
-
-    /**
-     * // Метод для расчета угловой скорости на основе разницы углов
-     * @param angleDifference
-     * @return угловая скорость со знаком
-     */
-    private double calculateAngularVelocity(double angleDifference) {
-        return Math.signum(angleDifference) * maxAngularVelocity;
-    }
-
-    private boolean reachedTarget = false;
-
-    /**
-     * Выполняет движение робота к цели.
-     */
-    void moveRobot() {
-        double distance = distance(targetPositionX, targetPositionY, positionX, positionY);
-        boolean previouslyReached = reachedTarget;
-
-        if (distance < 5) {
-            reachedTarget = true;
-        } else {
-            reachedTarget = false;
-        }
-
-        if (reachedTarget && !previouslyReached) {
-           Logger.debug(LocalManager.getStringLocal("informMessage"));
-        }
-
-        if (reachedTarget) {
-            return;
-        }
-
-        double angleToTarget = angleTo(positionX, positionY, targetPositionX, targetPositionY);
-        double angleDifference = angleToTarget - direction;
-
-        if (angleDifference > Math.PI) {
-            angleDifference -= 2 * Math.PI;
-        } else if (angleDifference < -Math.PI) {
-            angleDifference += 2 * Math.PI;
-        }
-
-        double angularVelocity = calculateAngularVelocity(angleDifference); // Если угол положителен,
-        // то робот будет поворачиваться по часовой стрелке с максимальной угловой скоростью, а если отрицателен, то против часовой стрелки.
-
-        double velocity = Math.min(maxVelocity, distance);
-
-        double duration = 10.0;
-        double newX = positionX + velocity * Math.cos(direction) * duration;
-        double newY = positionY + velocity * Math.sin(direction) * duration;
-        double newDirection = asNormalizedRadians(direction + angularVelocity * duration);
-
-        updatePosition(newX, newY, newDirection);
+        world.submit(w -> w.setPosition(index, newX, newY, newDirect));
     }
 
     /**
@@ -174,7 +74,7 @@ public class RobotModel extends Observable {
      * @return текущая координата X
      */
     public double getX() {
-        return (double) positionX;
+        return world.getX(index);
     }
 
     /**
@@ -182,7 +82,7 @@ public class RobotModel extends Observable {
      * @return текущая координата Y
      */
     public double getY() {
-        return (double) positionY;
+        return world.getY(index);
     }
 
     /**
@@ -190,7 +90,16 @@ public class RobotModel extends Observable {
      * @return текущее направление в радианах
      */
     public double getDirection() {
-        return direction;
+        return world.getDirection(index);
+    }
+
+    /**
+     * Получает последний опубликованный снимок мира, в котором находится робот.
+     * Вызывается только из потока обработки событий.
+     * @return согласованный снимок мира
+     */
+    public WorldSnapshot acquireSnapshot() {
+        return world.acquireSnapshot();
     }
 
     /**
@@ -198,7 +107,7 @@ public class RobotModel extends Observable {
      * @return координата цели по x
      */
     public double getTargetX() {
-        return targetPositionX;
+        return world.getTargetX(index);
     }
 
     /**
@@ -206,15 +115,15 @@ public class RobotModel extends Observable {
      * @return координата цели по y
      */
     public int getTargetY() {
-        return targetPositionY;
+        return world.getTargetY(index);
     }
 
     /**
-     * Устанавливает целевую позицию для робота.
+     * Устанавливает целевую позицию для робота. Может вызываться из любого потока:
+     * цель передается командой и применяется потоком симуляции в начале следующего такта.
      * @param p точка, которая является целью для робота
      */
     public void setTargetPosition(Point p) {
-        this.targetPositionX = p.x;
-        this.targetPositionY = p.y;
+        world.submit(WorldCommand.setTarget(index, p.x, p.y));
     }
 }
@@ -0,0 +1,228 @@
+package game;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Кэш заранее повернутых изображений робота и цели.
+ * Робот один раз рисуется в {@link BufferedImage} для каждого из заданного числа направлений,
+ * а при отрисовке кадра копируется изображение ближайшего направления, поэтому
+ * тысячи роботов на кадр обходятся копированием картинок, а не растеризацией овалов.
+ *
+ * <p>Изображения создаются в разрешении устройства с учетом увеличения, для которого построен кэш,
+ * а на экран выводятся с размером для фактического увеличения камеры, так что одним кэшем
+ * пользуются камеры с близкими увеличениями. Кэш сбрасывается
+ * при смене масштаба экрана или увеличения и по вызову {@link #invalidate()}, например при смене оформления.
+ * Используется только из потока обработки событий Swing.
+ */
+public class RobotSpriteCache {
+
+    /**
+     * количество направлений по умолчанию
+     */
+    public static final int defaultRotationSteps = 64;
+
+    /**
+     * размер стороны изображения робота в логических пикселях; робот 30x10 помещается при любом повороте
+     */
+    private static final int robotSpriteSize = 34;
+
+    /**
+     * размер стороны изображения цели в логических пикселях
+     */
+    private static final int targetSpriteSize = 8;
+
+    private final int rotationSteps;
+    private final BufferedImage[] robotSprites;
+    private BufferedImage targetSprite;
+
+    /**
+     * масштаб устройства, для которого построены изображения, 0 — еще не построены
+     */
+    private double scale;
+
+    /**
+     * увеличение камеры, для которого строятся изображения
+     */
+    private double zoom = 1.0;
+
+    /**
+     * Создает кэш с числом направлений из системного свойства {@code robots.spriteRotations}.
+     */
+    public RobotSpriteCache() {
+        this(Integer.getInteger("robots.spriteRotations", defaultRotationSteps));
+    }
+
+    /**
+     * Создает кэш с указанным числом направлений.
+     *
+     * @param rotationSteps количество заранее повернутых изображений, например 64 или 360
+     */
+    public RobotSpriteCache(int rotationSteps) {
+        if (rotationSteps < 1) {
+            throw new IllegalArgumentException("Rotation steps must be positive: " + rotationSteps);
+        }
+        this.rotationSteps = rotationSteps;
+        this.robotSprites = new BufferedImage[rotationSteps];
+    }
+
+    /**
+     * Возвращает количество направлений.
+     *
+     * @return количество заранее повернутых изображений
+     */
+    public int getRotationSteps() {
+        return rotationSteps;
+    }
+
+    /**
+     * Задает увеличение камеры. Если оно изменилось, изображения строятся заново.
+     *
+     * @param zoom увеличение, 1 — один пиксель модели на логический пиксель экрана
+     */
+    public void setZoom(double zoom) {
+        if (zoom != this.zoom) {
+            invalidate();
+            this.zoom = zoom;
+        }
+    }
+
+    /**
+     * Возвращает размер стороны изображения робота на экране при указанном увеличении.
+     *
+     * @param zoom увеличение камеры
+     * @return размер в логических пикселях
+     */
+    public static int getRobotSize(double zoom) {
+        return Math.max(1, (int) Math.ceil(robotSpriteSize * zoom));
+    }
+
+    /**
+     * Возвращает размер стороны изображения цели на экране при указанном увеличении.
+     *
+     * @param zoom увеличение камеры
+     * @return размер в логических пикселях
+     */
+    public static int getTargetSize(double zoom) {
+        return Math.max(1, (int) Math.ceil(targetSpriteSize * zoom));
+    }
+
+    /**
+     * Сбрасывает все изображения; они будут построены заново при следующей отрисовке.
+     */
+    public void invalidate() {
+        Arrays.fill(robotSprites, null);
+        targetSprite = null;
+        scale = 0;
+    }
+
+    /**
+     * Рисует робота с центром в указанной точке, выбирая изображение ближайшего направления.
+     *
+     * @param g         объект Graphics2D для рисования
+     * @param x         координата X центра робота
+     * @param y         координата Y центра робота
+     * @param direction направление робота в радианах
+     * @param size      размер стороны изображения на экране, {@link #getRobotSize(double)}
+     */
+    public void drawRobot(Graphics2D g, int x, int y, double direction, int size) {
+        validate(g);
+        int step = (int) Math.round(direction * rotationSteps / (2 * Math.PI)) % rotationSteps;
+        if (step < 0) {
+            step += rotationSteps;
+        }
+        BufferedImage sprite = robotSprites[step];
+        if (sprite == null) {
+            sprite = renderRobot(g.getDeviceConfiguration(), 2 * Math.PI * step / rotationSteps);
+            robotSprites[step] = sprite;
+        }
+        g.drawImage(sprite, x - size / 2, y - size / 2, size, size, null);
+    }
+
+    /**
+     * Рисует цель с центром в указанной точке.
+     *
+     * @param g    объект Graphics2D для рисования
+     * @param x    координата X цели
+     * @param y    координата Y цели
+     * @param size размер стороны изображения на экране, {@link #getTargetSize(double)}
+     */
+    public void drawTarget(Graphics2D g, int x, int y, int size) {
+        validate(g);
+        if (targetSprite == null) {
+            targetSprite = renderTarget(g.getDeviceConfiguration());
+        }
+        g.drawImage(targetSprite, x - size / 2, y - size / 2, size, size, null);
+    }
+
+    /**
+     * Сбрасывает кэш, если масштаб устройства отличается от того, для которого построены изображения.
+     */
+    private void validate(Graphics2D g) {
+        double deviceScale = g.getDeviceConfiguration().getDefaultTransform().getScaleX();
+        if (deviceScale != scale) {
+            invalidate();
+            scale = deviceScale;
+        }
+    }
+
+    /**
+     * Создает прозрачное изображение в разрешении устройства.
+     */
+    private BufferedImage createSprite(GraphicsConfiguration configuration, int size) {
+        int pixels = Math.max(1, (int) Math.ceil(size * zoom * scale));
+        return configuration.createCompatibleImage(pixels, pixels, Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Возвращает графику изображения, в которой рисуется в логических пикселях относительно центра.
+     */
+    private Graphics2D spriteGraphics(BufferedImage image, int size) {
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.scale(scale * zoom, scale * zoom);
+        g.translate(size / 2.0, size / 2.0);
+        return g;
+    }
+
+    private BufferedImage renderRobot(GraphicsConfiguration configuration, double direction) {
+        BufferedImage image = createSprite(configuration, robotSpriteSize);
+        Graphics2D g = spriteGraphics(image, robotSpriteSize);
+        g.transform(AffineTransform.getRotateInstance(direction));
+        g.setColor(Color.MAGENTA);
+        fillOval(g, 0, 0, 30, 10);
+        g.setColor(Color.BLACK);
+        drawOval(g, 0, 0, 30, 10);
+        g.setColor(Color.WHITE);
+        fillOval(g, 10, 0, 5, 5);
+        g.setColor(Color.BLACK);
+        drawOval(g, 10, 0, 5, 5);
+        g.dispose();
+        return image;
+    }
+
+    private BufferedImage renderTarget(GraphicsConfiguration configuration) {
+        BufferedImage image = createSprite(configuration, targetSpriteSize);
+        Graphics2D g = spriteGraphics(image, targetSpriteSize);
+        g.setColor(Color.GREEN);
+        fillOval(g, 0, 0, 5, 5);
+        g.setColor(Color.BLACK);
+        drawOval(g, 0, 0, 5, 5);
+        g.dispose();
+        return image;
+    }
+
+    private static void fillOval(Graphics2D g, int centerX, int centerY, int diam1, int diam2) {
+        g.fillOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    }
+
+    private static void drawOval(Graphics2D g, int centerX, int centerY, int diam1, int diam2) {
+        g.drawOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    }
+}
@@ -0,0 +1,43 @@
+package game;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Задача пула {@link java.util.concurrent.ForkJoinPool}, выполняющая шаг движения
+ * для диапазона позиций активного множества роботов. Диапазон делится пополам, пока не станет меньше порога.
+ * Каждый робот читает и пишет только свои элементы массивов мира, поэтому задачи
+ * не разделяют изменяемое состояние, а результат совпадает с последовательным шагом.
+ */
+class RobotStepTask extends RecursiveAction {
+    private final RobotWorld world;
+    private final int from;
+    private final int to;
+    private final int threshold;
+    private final double duration;
+
+    /**
+     * @param world     мир роботов
+     * @param from      первая позиция диапазона в активном множестве (включительно)
+     * @param to        последняя позиция диапазона в активном множестве (исключительно)
+     * @param threshold размер диапазона, который выполняется без деления
+     * @param duration  длительность шага
+     */
+    RobotStepTask(RobotWorld world, int from, int to, int threshold, double duration) {
+        this.world = world;
+        this.from = from;
+        this.to = to;
+        this.threshold = threshold;
+        this.duration = duration;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= threshold) {
+            world.moveRange(from, to, duration);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new RobotStepTask(world, from, middle, threshold, duration),
+                new RobotStepTask(world, middle, to, threshold, duration));
+    }
+}
@@ -0,0 +1,803 @@
+package game;
+
+import locale.LocalManager;
+import log.Logger;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Мир роботов. Хранит состояние всех роботов в упакованных массивах примитивов
+ * (структура массивов) и выполняет шаг движения одним плотным циклом по ним,
+ * не создавая объектов на каждого робота.
+ *
+ * <p>Состояние мира изменяет только поток симуляции. Другие потоки передают изменения
+ * командами {@link WorldCommand} через {@link #submit(WorldCommand)}, а читают состояние
+ * через снимки {@link #acquireSnapshot()}.
+ */
+public class RobotWorld {
+
+    /**
+     * максималная скорость перемещения робота
+     */
+    static final double maxVelocity = 0.1;
+
+    /**
+     * максимальная скорость поворота робота
+     */
+    static final double maxAngularVelocity = 0.003;
+
+    /**
+     * расстояние до цели, на котором робот считается достигшим её
+     */
+    static final double targetReachDistance = 5;
+
+    /**
+     * начальная позиция цели по координате x
+     */
+    private static final int defaultTargetX = 150;
+
+    /**
+     * начальная позиция цели по координате y
+     */
+    private static final int defaultTargetY = 100;
+
+    /**
+     * минимальное количество роботов на одну задачу при параллельном шаге
+     */
+    private static final int minRangeSize = 1024;
+
+    /**
+     * максимальное количество команд, применяемых за один такт
+     */
+    private static final int maxCommandBatch = 65536;
+
+    /**
+     * количество роботов в мире
+     */
+    private int count;
+
+    /**
+     * пул для параллельного шага, null — шаг выполняется в вызывающем потоке
+     */
+    private ForkJoinPool stepPool;
+
+    /**
+     * ядро, выполняющее шаг движения для диапазона роботов
+     */
+    private StepKernel kernel;
+
+    /**
+     * массивы состояния роботов; доступны ядрам шага из этого пакета
+     */
+    double[] positionX;
+    double[] positionY;
+    double[] direction;
+    int[] targetPositionX;
+    int[] targetPositionY;
+    boolean[] reachedTarget;
+
+    /**
+     * индексы движущихся роботов (активное множество); шаг выполняется только для них.
+     * Робот находится в активном множестве тогда и только тогда, когда он не у цели.
+     */
+    int[] active;
+
+    /**
+     * позиция робота в массиве {@link #active} или -1, если робот спит у цели
+     */
+    private int[] activeSlot;
+
+    /**
+     * количество движущихся роботов
+     */
+    int activeCount;
+
+    /**
+     * индексы роботов, изменившихся с последней публикации снимка, без повторов;
+     * по ним снимок копирует только изменившиеся элементы массивов
+     */
+    int[] dirty;
+    int dirtyCount;
+
+    /**
+     * номер поколения, в котором робот попал в {@link #dirty}; поколение сменяется при публикации
+     */
+    private int[] dirtyMark;
+    private int dirtyEpoch = 1;
+
+    /**
+     * позиции и направления роботов на предыдущем шаге, используются для интерполяции при отрисовке
+     */
+    double[] previousX;
+    double[] previousY;
+    double[] previousDirection;
+
+    /**
+     * суммарная длительность выполненных шагов движения
+     */
+    private double simulationTime;
+
+    /**
+     * сколько раз выполнен шаг одного робота с момента создания мира
+     */
+    private long steppedRobots;
+
+    /**
+     * момент реального времени, которому соответствует текущее состояние мира
+     */
+    private volatile long stateNanos;
+
+    /**
+     * длительность шага в реальном времени, 0 если интерполяция не нужна
+     */
+    private volatile long stepNanos;
+
+    /**
+     * версия состояния мира; увеличивается при каждом изменении, потребители опрашивают ее
+     */
+    private volatile long version;
+
+    /**
+     * обмен снимками состояния с потоком обработки событий
+     */
+    private final SnapshotExchange snapshots = new SnapshotExchange();
+
+    /**
+     * очередь команд от других потоков (много писателей, один читатель — поток симуляции)
+     */
+    private final ConcurrentLinkedQueue<WorldCommand> commands = new ConcurrentLinkedQueue<>();
+
+    /**
+     * количество команд, примененных с момента создания мира
+     */
+    private long appliedCommands;
+
+    /**
+     * признак приостановки движения роботов
+     */
+    private boolean paused;
+
+    /**
+     * наблюдатели шагов; массив заменяется целиком, чтобы шаг обходил его без выделения памяти
+     */
+    private volatile StepObserver[] stepObservers = new StepObserver[0];
+
+    /**
+     * Создает пустой мир с заданной начальной емкостью массивов.
+     *
+     * @param initialCapacity начальное количество роботов, под которое выделяется память
+     */
+    public RobotWorld(int initialCapacity) {
+        this(initialCapacity, StepKernels.defaultKernel());
+    }
+
+    /**
+     * Создает пустой мир с заданной начальной емкостью массивов и ядром шага.
+     *
+     * @param initialCapacity начальное количество роботов, под которое выделяется память
+     * @param kernel          ядро шага движения
+     */
+    RobotWorld(int initialCapacity, StepKernel kernel) {
+        this.kernel = kernel;
+        int capacity = Math.max(1, initialCapacity);
+        positionX = new double[capacity];
+        positionY = new double[capacity];
+        direction = new double[capacity];
+        targetPositionX = new int[capacity];
+        targetPositionY = new int[capacity];
+        reachedTarget = new boolean[capacity];
+        previousX = new double[capacity];
+        previousY = new double[capacity];
+        previousDirection = new double[capacity];
+        active = new int[capacity];
+        activeSlot = new int[capacity];
+        dirty = new int[capacity];
+        dirtyMark = new int[capacity];
+    }
+
+    /**
+     * Добавляет робота в указанную позицию.
+     *
+     * @param initialPositionX начальная координата X
+     * @param initialPositionY начальная координата Y
+     * @return индекс добавленного робота
+     */
+    public int addRobot(double initialPositionX, double initialPositionY) {
+        if (count == positionX.length) {
+            grow(count * 2);
+        }
+        int index = count++;
+        positionX[index] = initialPositionX;
+        positionY[index] = initialPositionY;
+        direction[index] = 0;
+        targetPositionX[index] = defaultTargetX;
+        targetPositionY[index] = defaultTargetY;
+        reachedTarget[index] = false;
+        previousX[index] = initialPositionX;
+        previousY[index] = initialPositionY;
+        previousDirection[index] = 0;
+        activeSlot[index] = -1;
+        activate(index);
+        markDirty(index);
+        return index;
+    }
+
+    /**
+     * Удаляет робота. На место удаленного переносится последний робот,
+     * поэтому индекс последнего робота меняется.
+     *
+     * @param index индекс удаляемого робота
+     */
+    public void removeRobot(int index) {
+        deactivate(index);
+        int last = --count;
+        if (index != last) {
+            int slot = activeSlot[last];
+            activeSlot[index] = slot;
+            if (slot >= 0) {
+                active[slot] = index;
+            }
+            positionX[index] = positionX[last];
+            positionY[index] = positionY[last];
+            direction[index] = direction[last];
+            targetPositionX[index] = targetPositionX[last];
+            targetPositionY[index] = targetPositionY[last];
+            reachedTarget[index] = reachedTarget[last];
+            previousX[index] = previousX[last];
+            previousY[index] = previousY[last];
+            previousDirection[index] = previousDirection[last];
+            markDirty(index);
+        }
+    }
+
+    /**
+     * Отправляет команду миру. Может вызываться из любого потока;
+     * команда будет применена потоком симуляции в начале следующего такта.
+     *
+     * @param command команда
+     */
+    public void submit(WorldCommand command) {
+        commands.offer(command);
+    }
+
+    /**
+     * Применяет накопившиеся команды порцией не больше {@code maxCommandBatch}.
+     * Вызывается только потоком симуляции в начале такта.
+     *
+     * @return количество примененных команд
+     */
+    public int drainCommands() {
+        int applied = 0;
+        WorldCommand command;
+        while (applied < maxCommandBatch && (command = commands.poll()) != null) {
+            command.apply(this);
+            applied++;
+        }
+        appliedCommands += applied;
+        return applied;
+    }
+
+    /**
+     * @return количество команд, примененных с момента создания мира
+     */
+    public long getAppliedCommands() {
+        return appliedCommands;
+    }
+
+    /**
+     * Приостанавливает или возобновляет движение роботов.
+     *
+     * @param paused true — приостановить
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * @return true, если движение роботов приостановлено
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Увеличивает емкость всех массивов состояния.
+     *
+     * @param capacity новая емкость
+     */
+    private void grow(int capacity) {
+        positionX = Arrays.copyOf(positionX, capacity);
+        positionY = Arrays.copyOf(positionY, capacity);
+        direction = Arrays.copyOf(direction, capacity);
+        targetPositionX = Arrays.copyOf(targetPositionX, capacity);
+        targetPositionY = Arrays.copyOf(targetPositionY, capacity);
+        reachedTarget = Arrays.copyOf(reachedTarget, capacity);
+        previousX = Arrays.copyOf(previousX, capacity);
+        previousY = Arrays.copyOf(previousY, capacity);
+        previousDirection = Arrays.copyOf(previousDirection, capacity);
+        active = Arrays.copyOf(active, capacity);
+        activeSlot = Arrays.copyOf(activeSlot, capacity);
+        dirty = Arrays.copyOf(dirty, capacity);
+        dirtyMark = Arrays.copyOf(dirtyMark, capacity);
+    }
+
+    /**
+     * Отмечает, что состояние робота изменилось с последней публикации снимка.
+     *
+     * @param index индекс робота
+     */
+    private void markDirty(int index) {
+        if (dirtyMark[index] != dirtyEpoch) {
+            dirtyMark[index] = dirtyEpoch;
+            dirty[dirtyCount++] = index;
+        }
+    }
+
+    /**
+     * Начинает новое поколение изменений после публикации снимка.
+     */
+    void clearDirty() {
+        dirtyCount = 0;
+        if (++dirtyEpoch == 0) {
+            Arrays.fill(dirtyMark, 0);
+            dirtyEpoch = 1;
+        }
+    }
+
+    /**
+     * Добавляет робота в активное множество, если его там еще нет.
+     *
+     * @param index индекс робота
+     */
+    private void activate(int index) {
+        if (activeSlot[index] < 0) {
+            activeSlot[index] = activeCount;
+            active[activeCount++] = index;
+        }
+    }
+
+    /**
+     * Удаляет робота из активного множества. На его место переносится последний активный робот.
+     *
+     * @param index индекс робота
+     */
+    private void deactivate(int index) {
+        int slot = activeSlot[index];
+        if (slot < 0) {
+            return;
+        }
+        int moved = active[--activeCount];
+        active[slot] = moved;
+        activeSlot[moved] = slot;
+        activeSlot[index] = -1;
+    }
+
+    /**
+     * Убирает из активного множества роботов, достигших цели на последнем шаге.
+     * Порядок оставшихся роботов сохраняется.
+     *
+     * <p>Ядра шага только отмечают достижение цели в {@link #reachedTarget}, а сообщает о нем
+     * этот проход в потоке симуляции после завершения всех частей параллельного шага, поэтому
+     * потоки пула не пишут в лог, а сообщения идут в порядке активного множества.
+     */
+    private void sleepReachedRobots() {
+        int kept = 0;
+        for (int k = 0; k < activeCount; k++) {
+            int index = active[k];
+            if (reachedTarget[index]) {
+                // в активном множестве только роботы не у цели: эта цель достигнута на этом шаге
+                onTargetReached(index);
+                activeSlot[index] = -1;
+            } else {
+                active[kept] = index;
+                activeSlot[index] = kept;
+                kept++;
+            }
+        }
+        activeCount = kept;
+    }
+
+    /**
+     * Возвращает количество движущихся роботов, для которых выполняется шаг.
+     *
+     * @return количество роботов в активном множестве
+     */
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * Возвращает количество роботов в мире.
+     *
+     * @return количество роботов
+     */
+    public int getRobotCount() {
+        return count;
+    }
+
+    /**
+     * Вычисляет расстояние между двумя точками.
+     *
+     * @param x1 координата X первой точки
+     * @param y1 координата Y первой точки
+     * @param x2 координата X второй точки
+     * @param y2 координата Y второй точки
+     * @return расстояние между точками
+     */
+    static double distance(double x1, double y1, double x2, double y2) {
+        double diffX = x1 - x2;
+        double diffY = y1 - y2;
+        return Math.sqrt(diffX * diffX + diffY * diffY);
+    }
+
+    /**
+     * Вычисляет угол между двумя точками.
+     *
+     * @param fromX координата X начальной точки
+     * @param fromY координата Y начальной точки
+     * @param toX   координата X конечной точки
+     * @param toY   координата Y конечной точки
+     * @return угол между точками в радианах
+     */
+    static double angleTo(double fromX, double fromY, double toX, double toY) {
+        double diffX = toX - fromX;
+        double diffY = toY - fromY;
+        return asNormalizedRadians(Math.atan2(diffY, diffX));
+    }
+
+    /**
+     * Приводит угол к диапазону от 0 до 2π радиан.
+     * @param angle угол для нормализации
+     * @return нормализованный угол
+     */
+    static double asNormalizedRadians(double angle) {
+        while (angle < 0) {
+            angle += 2 * Math.PI;
+        }
+        while (angle >= 2 * Math.PI) {
+            angle -= 2 * Math.PI;
+        }
+        return angle;
+    }
+
+    /**
+     * Выполняет один шаг движения всех роботов к их целям.
+     * Шаг выполняется только для роботов из активного множества; роботы, достигшие цели,
+     * засыпают до получения новой цели, поэтому стоимость шага зависит только от числа движущихся.
+     * Если задан пул потоков и движущихся роботов достаточно много, шаг выполняется параллельно.
+     *
+     * @param duration длительность шага
+     */
+    public void moveRobots(double duration) {
+        ForkJoinPool pool = stepPool;
+        int moving = activeCount;
+        for (int k = 0; k < moving; k++) {
+            markDirty(active[k]);
+        }
+        if (pool == null || moving < 2 * minRangeSize) {
+            moveRange(0, moving, duration);
+        } else {
+            int threshold = Math.max(minRangeSize, moving / (pool.getParallelism() * 4));
+            pool.invoke(new RobotStepTask(this, 0, moving, threshold, duration));
+        }
+        sleepReachedRobots();
+        simulationTime += duration;
+        steppedRobots += moving;
+        for (StepObserver observer : stepObservers) {
+            observer.onStep(this);
+        }
+    }
+
+    /**
+     * Возвращает время симуляции: суммарную длительность выполненных шагов движения.
+     * На паузе и пока все роботы спят время не идет.
+     *
+     * @return время симуляции в единицах модели
+     */
+    public double getSimulationTime() {
+        return simulationTime;
+    }
+
+    /**
+     * Возвращает, сколько раз выполнен шаг одного робота: сумму размеров активного
+     * множества по всем шагам движения.
+     *
+     * @return количество шагов роботов
+     */
+    public long getSteppedRobots() {
+        return steppedRobots;
+    }
+
+    /**
+     * Добавляет наблюдателя, вызываемого потоком симуляции после каждого шага.
+     *
+     * @param observer наблюдатель
+     */
+    public synchronized void addStepObserver(StepObserver observer) {
+        StepObserver[] observers = Arrays.copyOf(stepObservers, stepObservers.length + 1);
+        observers[observers.length - 1] = observer;
+        stepObservers = observers;
+    }
+
+    /**
+     * Удаляет наблюдателя шагов.
+     *
+     * @param observer наблюдатель
+     */
+    public synchronized void removeStepObserver(StepObserver observer) {
+        StepObserver[] observers = stepObservers;
+        for (int i = 0; i < observers.length; i++) {
+            if (observers[i] == observer) {
+                StepObserver[] remaining = new StepObserver[observers.length - 1];
+                System.arraycopy(observers, 0, remaining, 0, i);
+                System.arraycopy(observers, i + 1, remaining, i, observers.length - i - 1);
+                stepObservers = remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Выполняет шаг движения для диапазона позиций активного множества.
+     *
+     * @param from     первая позиция в активном множестве (включительно)
+     * @param to       последняя позиция в активном множестве (исключительно)
+     * @param duration длительность шага
+     */
+    void moveRange(int from, int to, double duration) {
+        kernel.moveRange(this, from, to, duration);
+    }
+
+    /**
+     * Задает ядро, выполняющее шаг движения.
+     *
+     * @param kernel ядро шага
+     */
+    public void setKernel(StepKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    /**
+     * Возвращает текущее ядро шага движения.
+     *
+     * @return ядро шага
+     */
+    public StepKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Задает пул, на котором выполняется шаг движения. Диапазон роботов делится
+     * на части, которые шагают параллельно; результат совпадает с последовательным шагом.
+     *
+     * @param pool пул потоков или null для шага в вызывающем потоке
+     */
+    public void setStepPool(ForkJoinPool pool) {
+        this.stepPool = pool;
+    }
+
+    /**
+     * Выполняет движение одного робота к цели.
+     *
+     * @param index    индекс робота
+     * @param duration длительность шага
+     */
+    void moveRobot(int index, double duration) {
+        double x = positionX[index];
+        double y = positionY[index];
+        int targetX = targetPositionX[index];
+        int targetY = targetPositionY[index];
+        double robotDirection = direction[index];
+        previousX[index] = x;
+        previousY[index] = y;
+        previousDirection[index] = robotDirection;
+
+        double distance = distance(targetX, targetY, x, y);
+        boolean reached = distance < targetReachDistance;
+        reachedTarget[index] = reached;
+
+        if (reached) {
+            return;
+        }
+
+        double angleToTarget = angleTo(x, y, targetX, targetY);
+        double angleDifference = angleToTarget - robotDirection;
+
+        if (angleDifference > Math.PI) {
+            angleDifference -= 2 * Math.PI;
+        } else if (angleDifference < -Math.PI) {
+            angleDifference += 2 * Math.PI;
+        }
+
+        // Если угол положителен, то робот поворачивается по часовой стрелке с максимальной угловой скоростью,
+        // а если отрицателен, то против часовой стрелки.
+        double angularVelocity = Math.signum(angleDifference) * maxAngularVelocity;
+
+        double velocity = Math.min(maxVelocity, distance);
+
+        positionX[index] = x + velocity * Math.cos(robotDirection) * duration;
+        positionY[index] = y + velocity * Math.sin(robotDirection) * duration;
+        direction[index] = asNormalizedRadians(robotDirection + angularVelocity * duration);
+    }
+
+    /**
+     * Отмечает, что состояние мира изменилось. Вызывается потоком симуляции
+     * один раз после порции шагов, в которой что-то изменилось; сама по себе не уведомляет слушателей.
+     */
+    public void markChanged() {
+        version++;
+    }
+
+    /**
+     * Возвращает версию состояния мира. Если версия не изменилась с прошлого опроса,
+     * мир не менялся.
+     *
+     * @return версия мира
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Возвращает версию мира в последнем опубликованном снимке. По ней потребители снимков
+     * узнают, что есть новый снимок: версия мира увеличивается до публикации, поэтому
+     * новая версия мира еще не означает, что снимок с ней уже можно забрать.
+     * Опрос считается обращением читателя и поддерживает публикацию снимков.
+     *
+     * @return версия опубликованного снимка, -1 — снимков еще не было
+     */
+    public long getPublishedVersion() {
+        return snapshots.getPublishedVersion();
+    }
+
+    /**
+     * Вызывается в потоке симуляции после шага, на котором робот оказался у своей цели.
+     *
+     * @param index индекс робота
+     */
+    void onTargetReached(int index) {
+        Logger.debug(() -> LocalManager.getStringLocal("informMessage"));
+    }
+
+    /**
+     * Запоминает, какому моменту реального времени соответствует текущее состояние мира.
+     *
+     * @param stateNanos момент времени {@link System#nanoTime()} последнего шага
+     * @param stepNanos  длительность шага в реальном времени, 0 — без интерполяции
+     */
+    public void recordTiming(long stateNanos, long stepNanos) {
+        this.stepNanos = stepNanos;
+        this.stateNanos = stateNanos;
+    }
+
+    /**
+     * @return момент времени {@link System#nanoTime()}, которому соответствует текущее состояние
+     */
+    long getStateNanos() {
+        return stateNanos;
+    }
+
+    /**
+     * @return длительность шага в реальном времени, 0 — без интерполяции
+     */
+    long getStepNanos() {
+        return stepNanos;
+    }
+
+    /**
+     * Интерполирует угол по кратчайшей дуге.
+     *
+     * @param from  начальный угол
+     * @param to    конечный угол
+     * @param alpha коэффициент интерполяции
+     * @return промежуточный угол в диапазоне от 0 до 2π
+     */
+    static double interpolateAngle(double from, double to, double alpha) {
+        double difference = to - from;
+        if (difference > Math.PI) {
+            difference -= 2 * Math.PI;
+        } else if (difference < -Math.PI) {
+            difference += 2 * Math.PI;
+        }
+        return asNormalizedRadians(from + difference * alpha);
+    }
+
+    /**
+     * Публикует снимок текущего состояния для потока обработки событий.
+     * Вызывается только потоком симуляции после порции шагов.
+     *
+     * @param nowNanos текущее время {@link System#nanoTime()}
+     */
+    public void publishSnapshot(long nowNanos) {
+        snapshots.publish(this, nowNanos);
+    }
+
+    /**
+     * Возвращает последний опубликованный согласованный снимок мира.
+     * Вызывается только из потока обработки событий.
+     *
+     * @return снимок мира
+     */
+    public WorldSnapshot acquireSnapshot() {
+        return snapshots.acquire();
+    }
+
+    /**
+     * Устанавливает позицию и направление робота.
+     *
+     * @param index     индекс робота
+     * @param newX      новая координата X
+     * @param newY      новая координата Y
+     * @param newDirect новое направление в радианах
+     */
+    public void setPosition(int index, double newX, double newY, double newDirect) {
+        positionX[index] = newX;
+        positionY[index] = newY;
+        direction[index] = newDirect;
+        previousX[index] = newX;
+        previousY[index] = newY;
+        previousDirection[index] = newDirect;
+        markDirty(index);
+    }
+
+    /**
+     * Устанавливает целевую позицию для робота. Спящий робот просыпается,
+     * если новая цель дальше расстояния достижения.
+     *
+     * @param index   индекс робота
+     * @param targetX координата цели по x
+     * @param targetY координата цели по y
+     */
+    public void setTargetPosition(int index, int targetX, int targetY) {
+        targetPositionX[index] = targetX;
+        targetPositionY[index] = targetY;
+        markDirty(index);
+        if (reachedTarget[index]
+                && distance(targetX, targetY, positionX[index], positionY[index]) >= targetReachDistance) {
+            reachedTarget[index] = false;
+            activate(index);
+        }
+    }
+
+    /**
+     * Получает текущую координату X робота.
+     * @param index индекс робота
+     */
+    public double getX(int index) {
+        return positionX[index];
+    }
+
+    /**
+     * Получает текущую координату Y робота.
+     * @param index индекс робота
+     */
+    public double getY(int index) {
+        return positionY[index];
+    }
+
+    /**
+     * Получает текущее направление робота в радианах.
+     * @param index индекс робота
+     */
+    public double getDirection(int index) {
+        return direction[index];
+    }
+
+    /**
+     * Получает координату цели робота по x.
+     * @param index индекс робота
+     */
+    public int getTargetX(int index) {
+        return targetPositionX[index];
+    }
+
+    /**
+     * Получает координату цели робота по y.
+     * @param index индекс робота
+     */
+    public int getTargetY(int index) {
+        return targetPositionY[index];
+    }
+}
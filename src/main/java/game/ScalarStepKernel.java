@@ -0,0 +1,21 @@
+package game;
+
+/**
+ * Скалярное ядро шага: обрабатывает роботов по одному.
+ * Используется по умолчанию и как эталон для проверки других ядер.
+ */
+class ScalarStepKernel implements StepKernel {
+
+    @Override
+    public void moveRange(RobotWorld world, int from, int to, double duration) {
+        int[] active = world.active;
+        for (int k = from; k < to; k++) {
+            world.moveRobot(active[k], duration);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,207 @@
+package game;
+
+/**
+ * Часы симуляции с фиксированным логическим шагом.
+ * Накапливает реально прошедшее время и сообщает, сколько шагов фиксированной
+ * длительности нужно выполнить, чтобы догнать его. Если цикл отстал больше чем
+ * на допустимое число шагов, лишнее время отбрасывается и учитывается в счетчике,
+ * поэтому скорость симуляции не зависит от нагрузки на машину.
+ */
+public class SimulationClock {
+
+    /**
+     * признак работы без ограничения частоты тактов
+     */
+    public static final int UNTHROTTLED = 0;
+
+    /**
+     * длительность логического шага в единицах модели (миллисекундах)
+     */
+    private final double stepDuration;
+
+    /**
+     * длительность шага в реальном времени, 0 для режима без ограничения частоты
+     */
+    private final long stepNanos;
+
+    /**
+     * максимальное количество шагов, выполняемых за один проход для догона
+     */
+    private final int maxCatchUpSteps;
+
+    /**
+     * момент реального времени, до которого симуляция уже просчитана
+     */
+    private long simulatedUntilNanos;
+
+    private long accumulatorNanos;
+    private long totalSteps;
+    private long droppedSteps;
+
+    /**
+     * Создает часы с указанными параметрами шага.
+     *
+     * @param stepDuration    длительность логического шага в единицах модели
+     * @param stepNanos       длительность шага в реальном времени, 0 — без ограничения частоты
+     * @param maxCatchUpSteps максимальное число шагов догона за один проход
+     */
+    public SimulationClock(double stepDuration, long stepNanos, int maxCatchUpSteps) {
+        if (stepDuration <= 0 || stepNanos < 0 || maxCatchUpSteps < 1) {
+            throw new IllegalArgumentException("Invalid simulation clock parameters");
+        }
+        this.stepDuration = stepDuration;
+        this.stepNanos = stepNanos;
+        this.maxCatchUpSteps = maxCatchUpSteps;
+    }
+
+    /**
+     * Создает часы, выполняющие указанное количество тактов в секунду.
+     * Логический шаг равен реальной длительности такта.
+     *
+     * @param ticksPerSecond частота тактов, {@link #UNTHROTTLED} — без ограничения
+     * @return новые часы
+     */
+    public static SimulationClock atRate(int ticksPerSecond) {
+        if (ticksPerSecond == UNTHROTTLED) {
+            return unthrottled(10.0);
+        }
+        long stepNanos = 1_000_000_000L / ticksPerSecond;
+        return new SimulationClock(1000.0 / ticksPerSecond, stepNanos, 5);
+    }
+
+    /**
+     * Создает часы без ограничения частоты: шаги выполняются подряд так быстро,
+     * как позволяет машина, но каждый шаг имеет одну и ту же логическую длительность.
+     *
+     * @param stepDuration длительность логического шага в единицах модели
+     * @return новые часы
+     */
+    public static SimulationClock unthrottled(double stepDuration) {
+        return new SimulationClock(stepDuration, 0, 1);
+    }
+
+    /**
+     * Разбирает частоту тактов из строки: число герц либо "max" для режима без ограничения.
+     *
+     * @param value строковое значение, например "100", "1000" или "max"
+     * @return частота тактов в секунду
+     */
+    public static int parseRate(String value) {
+        if ("max".equalsIgnoreCase(value) || "unthrottled".equalsIgnoreCase(value)) {
+            return UNTHROTTLED;
+        }
+        int rate = Integer.parseInt(value.trim());
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Tick rate must be positive: " + value);
+        }
+        return rate;
+    }
+
+    /**
+     * Запускает отсчет времени с указанного момента.
+     *
+     * @param nowNanos текущее время {@link System#nanoTime()}
+     */
+    public void start(long nowNanos) {
+        simulatedUntilNanos = nowNanos;
+        accumulatorNanos = 0;
+    }
+
+    /**
+     * Учитывает прошедшее время и возвращает количество шагов, которые нужно выполнить.
+     * Время сверх {@code maxCatchUpSteps} шагов отбрасывается.
+     *
+     * @param nowNanos текущее время {@link System#nanoTime()}
+     * @return количество шагов для выполнения
+     */
+    public int advance(long nowNanos) {
+        if (stepNanos == 0) {
+            simulatedUntilNanos = nowNanos;
+            totalSteps++;
+            return 1;
+        }
+        accumulatorNanos += nowNanos - simulatedUntilNanos;
+        simulatedUntilNanos = nowNanos;
+        long due = accumulatorNanos / stepNanos;
+        int steps = (int) Math.min(due, maxCatchUpSteps);
+        if (due > steps) {
+            droppedSteps += due - steps;
+            accumulatorNanos -= (due - steps) * stepNanos;
+        }
+        accumulatorNanos -= steps * stepNanos;
+        totalSteps += steps;
+        return steps;
+    }
+
+    /**
+     * Возвращает долю следующего шага, уже прошедшую в реальном времени.
+     * Используется для интерполяции положения при отрисовке.
+     *
+     * @return коэффициент интерполяции от 0 до 1
+     */
+    public double getAlpha() {
+        if (stepNanos == 0) {
+            return 1.0;
+        }
+        return Math.min(1.0, (double) accumulatorNanos / stepNanos);
+    }
+
+    /**
+     * Возвращает время, оставшееся до следующего шага.
+     *
+     * @param nowNanos текущее время {@link System#nanoTime()}
+     * @return количество наносекунд до следующего шага, 0 если шаг уже пора выполнять
+     */
+    public long nanosUntilNextStep(long nowNanos) {
+        if (stepNanos == 0) {
+            return 0;
+        }
+        long pending = accumulatorNanos + (nowNanos - simulatedUntilNanos);
+        return Math.max(0, stepNanos - pending);
+    }
+
+    /**
+     * Возвращает длительность логического шага в единицах модели.
+     *
+     * @return длительность шага
+     */
+    public double getStepDuration() {
+        return stepDuration;
+    }
+
+    /**
+     * Возвращает длительность шага в реальном времени.
+     *
+     * @return длительность шага в наносекундах, 0 для режима без ограничения частоты
+     */
+    public long getStepNanos() {
+        return stepNanos;
+    }
+
+    /**
+     * Возвращает момент реального времени, соответствующий начальной точке интерполяции.
+     *
+     * @return время в наносекундах
+     */
+    public long getReferenceNanos() {
+        return simulatedUntilNanos - accumulatorNanos;
+    }
+
+    /**
+     * Возвращает общее количество выполненных шагов.
+     *
+     * @return количество шагов
+     */
+    public long getTotalSteps() {
+        return totalSteps;
+    }
+
+    /**
+     * Возвращает количество шагов, отброшенных из-за превышения лимита догона.
+     *
+     * @return количество отброшенных шагов
+     */
+    public long getDroppedSteps() {
+        return droppedSteps;
+    }
+}
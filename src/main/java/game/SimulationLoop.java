@@ -0,0 +1,95 @@
+package game;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Цикл симуляции мира роботов с фиксированным шагом.
+ * Выполняет столько шагов, сколько накопилось реального времени по часам {@link SimulationClock},
+ * и ждет до следующего шага. В начале каждого шага применяет накопившиеся команды мира.
+ * Версия мира увеличивается, только если команда была применена или хотя бы один робот сдвинулся,
+ * поэтому на паузе и когда все роботы спят у целей потребители не видят изменений.
+ * Не зависит от Swing и может работать без дисплея.
+ */
+public class SimulationLoop implements Runnable {
+    private final RobotWorld world;
+    private final SimulationClock clock;
+
+    /**
+     * Действие, выполняемое после каждой порции шагов
+     */
+    private final Runnable onStepped;
+
+    private volatile boolean running = true;
+
+    /**
+     * Создает цикл симуляции без дополнительного действия после шагов.
+     *
+     * @param world мир роботов
+     * @param clock часы симуляции
+     */
+    public SimulationLoop(RobotWorld world, SimulationClock clock) {
+        this(world, clock, () -> { });
+    }
+
+    /**
+     * Создает цикл симуляции.
+     *
+     * @param world     мир роботов
+     * @param clock     часы симуляции
+     * @param onStepped действие после каждой порции шагов
+     */
+    public SimulationLoop(RobotWorld world, SimulationClock clock, Runnable onStepped) {
+        this.world = world;
+        this.clock = clock;
+        this.onStepped = onStepped;
+    }
+
+    /**
+     * Выполняет цикл до вызова {@link #stop()}.
+     */
+    @Override
+    public void run() {
+        clock.start(System.nanoTime());
+        while (running) {
+            int steps = clock.advance(System.nanoTime());
+            boolean changed = false;
+            for (int i = 0; i < steps; i++) {
+                if (world.drainCommands() > 0) {
+                    changed = true;
+                }
+                if (!world.isPaused() && world.getActiveCount() > 0) {
+                    world.moveRobots(clock.getStepDuration());
+                    changed = true;
+                }
+            }
+            if (changed) {
+                world.recordTiming(clock.getReferenceNanos(), clock.getStepNanos());
+                world.markChanged();
+            }
+            if (steps > 0) {
+                world.publishSnapshot(System.nanoTime());
+                onStepped.run();
+            }
+            long waitNanos = clock.nanosUntilNextStep(System.nanoTime());
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+        }
+    }
+
+    /**
+     * Останавливает цикл симуляции.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Возвращает часы симуляции.
+     *
+     * @return часы симуляции
+     */
+    public SimulationClock getClock() {
+        return clock;
+    }
+}
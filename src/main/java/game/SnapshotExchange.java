@@ -0,0 +1,105 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Обмен снимками мира между потоком симуляции и потоком обработки событий без блокировок
+ * (тройная буферизация). Поток симуляции заполняет свой буфер и публикует его одной атомарной
+ * заменой ссылки; читатель забирает последний опубликованный снимок такой же заменой,
+ * отдавая взамен прочитанный. Поэтому читатель всегда видит согласованное состояние,
+ * а копирование мира выполняет только поток симуляции и только пока есть читатель.
+ *
+ * <p>Публикация пропускается, если версия мира не изменилась, а заполнение буфера копирует
+ * только роботов, изменившихся с прошлого заполнения этого буфера: изменения каждой
+ * публикации запоминаются в двух других буферах.
+ *
+ * <p>Писатель — один поток симуляции, читатель — один поток (EDT).
+ */
+public class SnapshotExchange {
+
+    /**
+     * сколько снимки продолжают публиковаться после последнего обращения читателя
+     */
+    private static final long readerTimeoutNanos = 1_000_000_000L;
+
+    /**
+     * последний опубликованный снимок
+     */
+    private final AtomicReference<WorldSnapshot> ready = new AtomicReference<>(new WorldSnapshot());
+
+    /**
+     * буфер, который заполняет поток симуляции
+     */
+    private WorldSnapshot back = new WorldSnapshot();
+
+    /**
+     * снимок, который сейчас использует читатель
+     */
+    private WorldSnapshot front = new WorldSnapshot();
+
+    /**
+     * все три буфера, чтобы запоминать в них изменения независимо от того, у кого они сейчас
+     */
+    private final WorldSnapshot[] buffers = {ready.get(), back, front};
+
+    /**
+     * версия мира в последнем опубликованном снимке
+     */
+    private long publishedVersion = -1;
+
+    /**
+     * время последнего обращения читателя или опроса версии снимка; изначально читателя нет
+     */
+    private volatile long lastAcquireNanos = System.nanoTime() - readerTimeoutNanos - 1;
+
+    /**
+     * Публикует снимок мира, если его кто-то читает и мир изменился с прошлой публикации.
+     * Пока читателя нет, изменения копятся в мире и попадают в снимок при первой публикации
+     * после его возвращения. Вызывается только потоком симуляции.
+     *
+     * @param world    мир роботов
+     * @param nowNanos текущее время {@link System#nanoTime()}
+     */
+    void publish(RobotWorld world, long nowNanos) {
+        long version = world.getVersion();
+        if (version == publishedVersion || nowNanos - lastAcquireNanos > readerTimeoutNanos) {
+            return;
+        }
+        for (WorldSnapshot buffer : buffers) {
+            if (buffer != back) {
+                buffer.remember(world.dirty, world.dirtyCount, world.getRobotCount());
+            }
+        }
+        back.copyFrom(world);
+        world.clearDirty();
+        publishedVersion = version;
+        back = ready.getAndSet(back);
+    }
+
+    /**
+     * Возвращает последний опубликованный снимок. Вызывается только потоком обработки событий;
+     * возвращенный снимок не меняется до следующего вызова.
+     *
+     * @return согласованный снимок мира
+     */
+    public WorldSnapshot acquire() {
+        // снимок без читателя мог устареть; он обновится на ближайшем такте,
+        // и поток кадров увидит это по версии опубликованного снимка
+        lastAcquireNanos = System.nanoTime();
+        if (ready.get().getVersion() > front.getVersion()) {
+            front = ready.getAndSet(front);
+        }
+        return front;
+    }
+
+    /**
+     * Возвращает версию последнего опубликованного снимка и отмечает обращение читателя,
+     * чтобы публикация не прекращалась, пока кто-то ждет новых снимков.
+     *
+     * @return версия снимка, -1 — снимков еще не было
+     */
+    long getPublishedVersion() {
+        lastAcquireNanos = System.nanoTime();
+        return ready.get().getVersion();
+    }
+}
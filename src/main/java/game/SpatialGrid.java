@@ -0,0 +1,203 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Равномерная сетка для поиска роботов по прямоугольной области. Плоскость делится
+ * на квадратные клетки, клетки хешируются в таблицу списков фиксированного размера,
+ * и каждый робот состоит в списке своей клетки. Перемещение робота стоит O(1), а запрос
+ * перебирает только клетки, пересекающиеся с областью, поэтому его стоимость зависит
+ * от размера области и числа роботов в ней, а не от числа всех роботов.
+ *
+ * <p>Если область покрывает больше клеток, чем ячеек в таблице, перебирается вся таблица.
+ * Сетка не потокобезопасна.
+ */
+class SpatialGrid {
+
+    /**
+     * количество ячеек хеш-таблицы клеток (степень двойки)
+     */
+    private static final int bucketCount = 1 << 14;
+
+    /**
+     * признак робота, которого нет в сетке
+     */
+    private static final int noCell = Integer.MIN_VALUE;
+
+    /**
+     * наибольший по модулю номер клетки
+     */
+    private static final int maxCell = 1 << 30;
+
+    private final double cellSize;
+
+    /**
+     * первый робот в списке каждой ячейки таблицы, -1 — список пуст
+     */
+    private final int[] heads = new int[bucketCount];
+
+    /**
+     * двусвязные списки роботов и клетка, в которой записан каждый робот
+     */
+    private int[] next = new int[0];
+    private int[] previous = new int[0];
+    private int[] cellX = new int[0];
+    private int[] cellY = new int[0];
+
+    /**
+     * роботы, найденные последним запросом
+     */
+    private int[] found = new int[16];
+
+    /**
+     * @param cellSize размер стороны клетки в единицах координат
+     */
+    SpatialGrid(double cellSize) {
+        this.cellSize = cellSize;
+        Arrays.fill(heads, -1);
+    }
+
+    /**
+     * Записывает робота в клетку, содержащую точку. Если клетка не изменилась, ничего не делает.
+     *
+     * @param index индекс робота
+     * @param x     координата X
+     * @param y     координата Y
+     */
+    void put(int index, double x, double y) {
+        ensureCapacity(index + 1);
+        int column = cell(x);
+        int row = cell(y);
+        if (cellX[index] == column && cellY[index] == row) {
+            return;
+        }
+        remove(index);
+        int bucket = bucket(column, row);
+        int head = heads[bucket];
+        next[index] = head;
+        previous[index] = -1;
+        if (head >= 0) {
+            previous[head] = index;
+        }
+        heads[bucket] = index;
+        cellX[index] = column;
+        cellY[index] = row;
+    }
+
+    /**
+     * Удаляет робота из сетки, если он в ней есть.
+     *
+     * @param index индекс робота
+     */
+    void remove(int index) {
+        if (index >= cellX.length || cellX[index] == noCell) {
+            return;
+        }
+        int before = previous[index];
+        int after = next[index];
+        if (before >= 0) {
+            next[before] = after;
+        } else {
+            heads[bucket(cellX[index], cellY[index])] = after;
+        }
+        if (after >= 0) {
+            previous[after] = before;
+        }
+        cellX[index] = noCell;
+    }
+
+    /**
+     * Удаляет из сетки всех роботов.
+     */
+    void clear() {
+        Arrays.fill(heads, -1);
+        Arrays.fill(cellX, noCell);
+    }
+
+    /**
+     * Находит роботов, записанных в клетках, пересекающихся с областью. Найденные роботы
+     * лежат в {@link #getFound()} до следующего запроса; роботы у границы области могут
+     * оказаться за ее пределами на расстоянии меньше клетки.
+     *
+     * @param minX левая граница области
+     * @param minY верхняя граница области
+     * @param maxX правая граница области
+     * @param maxY нижняя граница области
+     * @return количество найденных роботов
+     */
+    int query(double minX, double minY, double maxX, double maxY) {
+        if (!(minX <= maxX && minY <= maxY)) {
+            return 0;
+        }
+        int fromColumn = cell(minX);
+        int fromRow = cell(minY);
+        int toColumn = cell(maxX);
+        int toRow = cell(maxY);
+        long cells = ((long) toColumn - fromColumn + 1) * ((long) toRow - fromRow + 1);
+        int count = 0;
+        if (cells >= bucketCount) {
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                for (int index = heads[bucket]; index >= 0; index = next[index]) {
+                    if (cellX[index] >= fromColumn && cellX[index] <= toColumn
+                            && cellY[index] >= fromRow && cellY[index] <= toRow) {
+                        count = addFound(count, index);
+                    }
+                }
+            }
+            return count;
+        }
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                for (int index = heads[bucket(column, row)]; index >= 0; index = next[index]) {
+                    // в одной ячейке таблицы могут оказаться роботы разных клеток
+                    if (cellX[index] == column && cellY[index] == row) {
+                        count = addFound(count, index);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return роботы, найденные последним запросом {@link #query}
+     */
+    int[] getFound() {
+        return found;
+    }
+
+    private int addFound(int count, int index) {
+        if (count == found.length) {
+            found = Arrays.copyOf(found, count * 2);
+        }
+        found[count] = index;
+        return count + 1;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= cellX.length) {
+            return;
+        }
+        int size = Math.max(capacity, cellX.length * 2);
+        int oldSize = cellX.length;
+        next = Arrays.copyOf(next, size);
+        previous = Arrays.copyOf(previous, size);
+        cellX = Arrays.copyOf(cellX, size);
+        cellY = Arrays.copyOf(cellY, size);
+        Arrays.fill(cellX, oldSize, size, noCell);
+    }
+
+    /**
+     * Возвращает номер клетки; очень далекие координаты прижимаются к границе, чтобы
+     * перебор клеток не переполнялся.
+     */
+    private int cell(double coordinate) {
+        double cell = Math.floor(coordinate / cellSize);
+        return (int) Math.max(-maxCell, Math.min(maxCell, cell));
+    }
+
+    private static int bucket(int column, int row) {
+        int hash = column * 0x9E3779B1 ^ row * 0x85EBCA6B;
+        return (hash ^ (hash >>> 15)) & (bucketCount - 1);
+    }
+}
@@ -0,0 +1,28 @@
+package game;
+
+/**
+ * Ядро шага движения: применяет расчет движения к диапазону движущихся роботов мира.
+ * Ядро не хранит изменяемого состояния и может вызываться из нескольких потоков
+ * для непересекающихся диапазонов.
+ */
+public interface StepKernel {
+
+    /**
+     * Выполняет шаг движения для роботов, индексы которых записаны в активном множестве
+     * мира на позициях из диапазона. Роботы активного множества еще не достигли цели;
+     * достигших цели ядро отмечает в {@code reachedTarget}, а мир усыпляет их после шага.
+     *
+     * @param world    мир роботов
+     * @param from     первая позиция в активном множестве (включительно)
+     * @param to       последняя позиция в активном множестве (исключительно)
+     * @param duration длительность шага
+     */
+    void moveRange(RobotWorld world, int from, int to, double duration);
+
+    /**
+     * Возвращает название ядра для отчетов.
+     *
+     * @return название ядра
+     */
+    String name();
+}
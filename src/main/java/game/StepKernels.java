@@ -0,0 +1,159 @@
+package game;
+
+import locale.LocalManager;
+import log.Logger;
+
+import java.util.SplittableRandom;
+
+/**
+ * Выбор ядра шага при запуске.
+ * Ядро задается системным свойством {@code robots.kernel}: "scalar" (по умолчанию) или "vector".
+ * Векторное ядро используется, только если модуль {@code jdk.incubator.vector} доступен
+ * и ядро прошло проверку точности относительно скалярного; иначе выбирается скалярное.
+ */
+public final class StepKernels {
+
+    /**
+     * допустимое расхождение координат и направления после одного шага
+     */
+    static final double tolerance = 1e-9;
+
+    private static final StepKernel scalarKernel = new ScalarStepKernel();
+
+    private static volatile StepKernel defaultKernel;
+
+    private StepKernels() {
+    }
+
+    /**
+     * Возвращает скалярное ядро.
+     *
+     * @return скалярное ядро
+     */
+    public static StepKernel scalar() {
+        return scalarKernel;
+    }
+
+    /**
+     * Возвращает ядро по умолчанию, выбранное по системному свойству {@code robots.kernel}.
+     *
+     * @return ядро шага
+     */
+    public static StepKernel defaultKernel() {
+        StepKernel kernel = defaultKernel;
+        if (kernel == null) {
+            kernel = select(System.getProperty("robots.kernel", "scalar"));
+            defaultKernel = kernel;
+        }
+        return kernel;
+    }
+
+    /**
+     * Выбирает ядро по названию. Если векторное ядро недоступно или не прошло проверку
+     * точности, возвращается скалярное.
+     *
+     * @param name название ядра: "scalar" или "vector"
+     * @return ядро шага
+     */
+    public static StepKernel select(String name) {
+        if (!"vector".equalsIgnoreCase(name)) {
+            return scalarKernel;
+        }
+        StepKernel vector;
+        try {
+            vector = (StepKernel) Class.forName("game.VectorStepKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            Logger.error("{}: {}", LocalManager.getStringLocal("vectorKernelUnavailable"), e);
+            return scalarKernel;
+        }
+        double error = maxStepError(vector, 4096, 20);
+        if (!(error <= tolerance)) {
+            Logger.error("{}: {}", LocalManager.getStringLocal("vectorKernelInaccurate"), error);
+            return scalarKernel;
+        }
+        return vector;
+    }
+
+    /**
+     * Сравнивает ядро со скалярным: из одинаковых случайных состояний выполняет шаги
+     * каждым ядром и возвращает наибольшее расхождение координат и направления за шаг.
+     * Часть роботов засыпает у цели и затем просыпается, чтобы проверить работу
+     * с разреженным активным множеством.
+     *
+     * @param kernel проверяемое ядро
+     * @param robots количество роботов в проверочном мире
+     * @param rounds количество проверяемых случайных состояний
+     * @return наибольшее расхождение за один шаг
+     */
+    public static double maxStepError(StepKernel kernel, int robots, int rounds) {
+        SplittableRandom random = new SplittableRandom(1);
+        double maxError = 0;
+        for (int round = 0; round < rounds; round++) {
+            RobotWorld expected = new ValidationWorld(robots, scalarKernel);
+            RobotWorld actual = new ValidationWorld(robots, kernel);
+            for (int i = 0; i < robots; i++) {
+                double x = random.nextDouble(0, 1000);
+                double y = random.nextDouble(0, 1000);
+                double direction = random.nextDouble(0, 2 * Math.PI);
+                boolean nearTarget = random.nextInt(8) == 0;
+                int targetX = nearTarget ? (int) x : random.nextInt(1000);
+                int targetY = nearTarget ? (int) y : random.nextInt(1000);
+                expected.addRobot(x, y);
+                actual.addRobot(x, y);
+                expected.setPosition(i, x, y, direction);
+                actual.setPosition(i, x, y, direction);
+                expected.setTargetPosition(i, targetX, targetY);
+                actual.setTargetPosition(i, targetX, targetY);
+            }
+            double duration = 1 + random.nextInt(10);
+            expected.moveRobots(duration);
+            actual.moveRobots(duration);
+            maxError = Math.max(maxError, difference(expected, actual));
+
+            for (int i = robots - 1; i >= 0; i -= 1 + random.nextInt(16)) {
+                int targetX = random.nextInt(1000);
+                int targetY = random.nextInt(1000);
+                expected.setTargetPosition(i, targetX, targetY);
+                actual.setTargetPosition(i, targetX, targetY);
+            }
+            expected.moveRobots(duration);
+            actual.moveRobots(duration);
+            maxError = Math.max(maxError, difference(expected, actual));
+        }
+        return maxError;
+    }
+
+    /**
+     * Возвращает наибольшее расхождение координат и направления между мирами
+     * или бесконечность, если у миров различаются роботы, достигшие цели.
+     */
+    private static double difference(RobotWorld expected, RobotWorld actual) {
+        if (expected.getActiveCount() != actual.getActiveCount()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double maxError = 0;
+        for (int i = 0; i < expected.getRobotCount(); i++) {
+            if (expected.reachedTarget[i] != actual.reachedTarget[i]) {
+                return Double.POSITIVE_INFINITY;
+            }
+            maxError = Math.max(maxError, Math.abs(expected.getX(i) - actual.getX(i)));
+            maxError = Math.max(maxError, Math.abs(expected.getY(i) - actual.getY(i)));
+            double directionError = Math.abs(expected.getDirection(i) - actual.getDirection(i));
+            maxError = Math.max(maxError, Math.min(directionError, 2 * Math.PI - directionError));
+        }
+        return maxError;
+    }
+
+    /**
+     * Мир для проверки ядер, не записывающий в лог достижение целей.
+     */
+    private static class ValidationWorld extends RobotWorld {
+        ValidationWorld(int initialCapacity, StepKernel kernel) {
+            super(initialCapacity, kernel);
+        }
+
+        @Override
+        void onTargetReached(int index) {
+        }
+    }
+}
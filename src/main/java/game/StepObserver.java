@@ -0,0 +1,15 @@
+package game;
+
+/**
+ * Наблюдатель шагов мира роботов. Вызывается потоком симуляции после каждого шага движения,
+ * поэтому должен работать за время, пропорциональное числу движущихся роботов, и не блокироваться.
+ */
+public interface StepObserver {
+
+    /**
+     * Вызывается потоком симуляции после шага движения.
+     *
+     * @param world мир, в котором выполнен шаг
+     */
+    void onStep(RobotWorld world);
+}
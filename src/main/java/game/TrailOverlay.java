@@ -0,0 +1,246 @@
+package game;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Слой следов движения и карты занятости поля. Поле покрыто сеткой клеток; после каждого шага
+ * поток симуляции отмечает клетки, в которых находятся движущиеся роботы, сразу обновляя
+ * цвет этих клеток в растре. Поэтому шаг стоит O(движущихся роботов), а отрисовка кадра —
+ * одно копирование растра, без пересчета истории.
+ *
+ * <p>Значения клеток угасают вдвое за период полураспада слоя, измеренный во времени симуляции,
+ * поэтому скорость угасания не зависит от частоты тактов. Угасание применяется лениво:
+ * клетка хранит эпоху последнего обновления, а при следующем обращении значение сдвигается
+ * на число прошедших эпох. Слой хранит список непогасших клеток и на каждом шаге перекрашивает
+ * такую его часть, чтобы каждая клетка обновлялась раз в период полураспада; погасшие клетки
+ * из списка удаляются. Поэтому стоимость шага зависит от числа следов, а не от размера сетки.
+ *
+ * <p>Растр пишет только поток симуляции, а читает при отрисовке поток обработки событий;
+ * кадр может содержать клетки разных шагов, что для наглядного слоя допустимо.
+ */
+public class TrailOverlay implements StepObserver {
+
+    /**
+     * размер сетки по умолчанию в клетках и размер клетки в единицах модели
+     */
+    public static final int defaultGridSize = 512;
+    public static final int defaultCellSize = 2;
+
+    /**
+     * следы: быстро угасающий слой, заметный после одного прохода робота
+     */
+    private final Layer trails;
+
+    /**
+     * карта занятости: медленно угасающий слой, набирающий яркость за много проходов
+     */
+    private final Layer heatmap;
+
+    private final int columns;
+    private final int rows;
+    private final int cellSize;
+
+    /**
+     * длительность шага, под которую подобраны прибавки к значениям клеток
+     */
+    private static final double referenceStep = 10.0;
+
+    /**
+     * время симуляции последнего отмеченного шага, отрицательное — шагов еще не было
+     */
+    private double lastTime = -1;
+
+    /**
+     * Создает слой с сеткой по умолчанию.
+     */
+    public TrailOverlay() {
+        this(defaultGridSize, defaultGridSize, defaultCellSize);
+    }
+
+    /**
+     * Создает слой, покрывающий область поля от (0, 0) до (columns * cellSize, rows * cellSize).
+     *
+     * @param columns  количество клеток по горизонтали
+     * @param rows     количество клеток по вертикали
+     * @param cellSize размер клетки в единицах модели
+     */
+    public TrailOverlay(int columns, int rows, int cellSize) {
+        if (columns < 1 || rows < 1 || cellSize < 1) {
+            throw new IllegalArgumentException("Invalid overlay grid");
+        }
+        this.columns = columns;
+        this.rows = rows;
+        this.cellSize = cellSize;
+        this.trails = new Layer(columns, rows, 500, 2048, 0xFF00FF);
+        this.heatmap = new Layer(columns, rows, 30000, 256, 0xFF4000);
+    }
+
+    /**
+     * Отмечает клетки движущихся роботов. Вызывается потоком симуляции после каждого шага.
+     *
+     * @param world мир, в котором выполнен шаг
+     */
+    @Override
+    public void onStep(RobotWorld world) {
+        double time = world.getSimulationTime();
+        double elapsed = lastTime < 0 ? referenceStep : time - lastTime;
+        lastTime = time;
+        int trailAmount = trails.amount(elapsed);
+        int heatAmount = heatmap.amount(elapsed);
+        int[] active = world.active;
+        for (int k = 0; k < world.activeCount; k++) {
+            int index = active[k];
+            int column = (int) Math.floor(world.positionX[index] / cellSize);
+            int row = (int) Math.floor(world.positionY[index] / cellSize);
+            if (column >= 0 && column < columns && row >= 0 && row < rows) {
+                int cell = row * columns + column;
+                trails.add(cell, time, trailAmount);
+                heatmap.add(cell, time, heatAmount);
+            }
+        }
+        trails.sweep(time, elapsed);
+        heatmap.sweep(time, elapsed);
+    }
+
+    /**
+     * Рисует слой через указанную камеру.
+     *
+     * @param g            объект Graphics2D для рисования
+     * @param viewport     камера
+     * @param showTrails   рисовать ли следы
+     * @param showHeatmap  рисовать ли карту занятости
+     */
+    public void paint(Graphics2D g, Viewport viewport, boolean showTrails, boolean showHeatmap) {
+        int x0 = (int) Math.floor(viewport.toScreenX(0));
+        int y0 = (int) Math.floor(viewport.toScreenY(0));
+        int x1 = (int) Math.ceil(viewport.toScreenX((double) columns * cellSize));
+        int y1 = (int) Math.ceil(viewport.toScreenY((double) rows * cellSize));
+        if (showHeatmap) {
+            g.drawImage(heatmap.image, x0, y0, x1, y1, 0, 0, columns, rows, null);
+        }
+        if (showTrails) {
+            g.drawImage(trails.image, x0, y0, x1, y1, 0, 0, columns, rows, null);
+        }
+    }
+
+    /**
+     * Угасающий растр значений клеток с готовыми цветами пикселей.
+     */
+    private static class Layer {
+
+        /**
+         * наибольшее значение клетки; непрозрачность пикселя равна значению, деленному на 16
+         */
+        private static final int maxValue = 255 << 4;
+
+        private final int[] values;
+        private final int[] epochs;
+
+        /**
+         * период полураспада во времени симуляции
+         */
+        private final double halfLife;
+
+        /**
+         * прибавка к значению клетки за одного робота за шаг длительностью {@link TrailOverlay#referenceStep}
+         */
+        private final int increment;
+        private final int rgb;
+
+        /**
+         * непогасшие клетки, позиция каждой клетки в этом списке (-1 — ее там нет)
+         * и позиция, с которой продолжить перекрашивание
+         */
+        private final int[] live;
+        private final int[] liveSlot;
+        private int liveCount;
+        private int sweepCursor;
+
+        /**
+         * растр, пиксели которого записываются напрямую
+         */
+        private final BufferedImage image;
+        private final int[] pixels;
+
+        Layer(int columns, int rows, double halfLife, int increment, int rgb) {
+            int cells = columns * rows;
+            this.values = new int[cells];
+            this.epochs = new int[cells];
+            this.halfLife = halfLife;
+            this.increment = increment;
+            this.rgb = rgb;
+            this.live = new int[cells];
+            this.liveSlot = new int[cells];
+            Arrays.fill(liveSlot, -1);
+            this.image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+            this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+
+        /**
+         * Возвращает прибавку за одного робота за шаг указанной длительности.
+         */
+        int amount(double elapsed) {
+            return (int) Math.max(1, Math.min(maxValue, Math.round(increment * elapsed / referenceStep)));
+        }
+
+        /**
+         * Прибавляет робота к значению клетки с учетом угасания и перекрашивает ее.
+         */
+        void add(int cell, double time, int amount) {
+            int value = Math.min(maxValue, decayed(cell, epoch(time)) + amount);
+            values[cell] = value;
+            epochs[cell] = epoch(time);
+            paint(cell, value);
+            if (liveSlot[cell] < 0) {
+                liveSlot[cell] = liveCount;
+                live[liveCount++] = cell;
+            }
+        }
+
+        /**
+         * Перекрашивает часть непогасших клеток с учетом угасания: за период полураспада
+         * каждая клетка перекрашивается хотя бы раз.
+         *
+         * @param time    текущее время симуляции
+         * @param elapsed время симуляции с прошлого шага
+         */
+        void sweep(double time, double elapsed) {
+            int epoch = epoch(time);
+            int budget = (int) Math.min(liveCount, Math.ceil(liveCount * elapsed / halfLife));
+            for (int i = 0; i < budget && liveCount > 0; i++) {
+                if (sweepCursor >= liveCount) {
+                    sweepCursor = 0;
+                }
+                int cell = live[sweepCursor];
+                int value = decayed(cell, epoch);
+                values[cell] = value;
+                epochs[cell] = epoch;
+                paint(cell, value);
+                if (value == 0) {
+                    int last = live[--liveCount];
+                    live[sweepCursor] = last;
+                    liveSlot[last] = sweepCursor;
+                    liveSlot[cell] = -1;
+                } else {
+                    sweepCursor++;
+                }
+            }
+        }
+
+        private int epoch(double time) {
+            return (int) (time / halfLife);
+        }
+
+        private int decayed(int cell, int epoch) {
+            int elapsed = epoch - epochs[cell];
+            return elapsed >= 31 ? 0 : values[cell] >>> elapsed;
+        }
+
+        private void paint(int cell, int value) {
+            pixels[cell] = value == 0 ? 0 : ((value >>> 4) << 24) | rgb;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package game;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Векторное ядро шага на основе {@code jdk.incubator.vector}.
+ * Обрабатывает за одну итерацию столько роботов, сколько помещается в регистр SIMD,
+ * повторяя расчет скалярного ядра; хвост диапазона обрабатывается скалярно.
+ * Роботы берутся окнами подряд идущих индексов шириной в регистр; в окне обрабатываются
+ * по маске только движущиеся роботы этого диапазона. Активное множество в основном
+ * упорядочено по возрастанию индексов, поэтому окна обычно заполнены плотно.
+ * Для работы требуется запуск с {@code --add-modules jdk.incubator.vector}.
+ */
+class VectorStepKernel implements StepKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * вид целочисленного вектора с тем же количеством элементов, что и {@link #SPECIES}
+     */
+    private static final VectorSpecies<Integer> INT_SPECIES =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+
+    private static final double twoPi = 2 * Math.PI;
+
+    @Override
+    public void moveRange(RobotWorld world, int from, int to, double duration) {
+        int[] active = world.active;
+        int capacity = world.positionX.length;
+        int lanes = SPECIES.length();
+        int k = from;
+        while (k < to) {
+            int base = active[k];
+            if (base + lanes > capacity) {
+                world.moveRobot(base, duration);
+                k++;
+                continue;
+            }
+            // Собираем идущие следом позиции диапазона, чьи роботы попадают в окно [base, base + lanes)
+            long laneBits = 0;
+            int next = k;
+            while (next < to) {
+                int offset = active[next] - base;
+                if (offset < 0 || offset >= lanes || (laneBits & (1L << offset)) != 0) {
+                    break;
+                }
+                laneBits |= 1L << offset;
+                next++;
+            }
+            if (next - k == 1) {
+                world.moveRobot(base, duration);
+            } else {
+                moveLanes(world, base, laneBits, duration);
+            }
+            k = next;
+        }
+    }
+
+    /**
+     * Выполняет шаг для роботов окна [base, base + SPECIES.length()), отмеченных маской.
+     * Остальные элементы окна читаются, но не записываются: они могут принадлежать
+     * другому диапазону, который шагает параллельно.
+     *
+     * @param world     мир роботов
+     * @param base      индекс первого робота окна
+     * @param laneBits  битовая маска движущихся роботов окна, относящихся к этому диапазону
+     * @param duration  длительность шага
+     */
+    private static void moveLanes(RobotWorld world, int base, long laneBits, double duration) {
+        VectorMask<Double> robots = VectorMask.fromLong(SPECIES, laneBits);
+        DoubleVector x = DoubleVector.fromArray(SPECIES, world.positionX, base);
+        DoubleVector y = DoubleVector.fromArray(SPECIES, world.positionY, base);
+        DoubleVector robotDirection = DoubleVector.fromArray(SPECIES, world.direction, base);
+        DoubleVector targetX = (DoubleVector) IntVector.fromArray(INT_SPECIES, world.targetPositionX, base)
+                .convertShape(VectorOperators.I2D, SPECIES, 0);
+        DoubleVector targetY = (DoubleVector) IntVector.fromArray(INT_SPECIES, world.targetPositionY, base)
+                .convertShape(VectorOperators.I2D, SPECIES, 0);
+
+        x.intoArray(world.previousX, base, robots);
+        y.intoArray(world.previousY, base, robots);
+        robotDirection.intoArray(world.previousDirection, base, robots);
+
+        DoubleVector diffX = targetX.sub(x);
+        DoubleVector diffY = targetY.sub(y);
+        DoubleVector distance = diffX.mul(diffX).add(diffY.mul(diffY)).sqrt();
+
+        // В активном множестве только роботы, еще не достигшие цели,
+        // поэтому каждый достигший цели на этом шаге достиг ее впервые
+        VectorMask<Double> reached = distance.lt(RobotWorld.targetReachDistance).and(robots);
+        if (reached.anyTrue()) {
+            for (int lane = 0; lane < SPECIES.length(); lane++) {
+                if (reached.laneIsSet(lane)) {
+                    world.reachedTarget[base + lane] = true;
+                }
+            }
+        }
+        VectorMask<Double> moving = robots.andNot(reached);
+        if (!moving.anyTrue()) {
+            return;
+        }
+
+        DoubleVector angleToTarget = diffY.lanewise(VectorOperators.ATAN2, diffX);
+        angleToTarget = angleToTarget.add(twoPi, angleToTarget.lt(0));
+
+        DoubleVector angleDifference = angleToTarget.sub(robotDirection);
+        angleDifference = angleDifference
+                .sub(twoPi, angleDifference.compare(VectorOperators.GT, Math.PI))
+                .add(twoPi, angleDifference.lt(-Math.PI));
+
+        DoubleVector angularVelocity = DoubleVector.zero(SPECIES)
+                .blend(RobotWorld.maxAngularVelocity, angleDifference.compare(VectorOperators.GT, 0))
+                .blend(-RobotWorld.maxAngularVelocity, angleDifference.lt(0));
+
+        DoubleVector velocity = distance.min(RobotWorld.maxVelocity);
+
+        DoubleVector newX = x.add(velocity.mul(robotDirection.lanewise(VectorOperators.COS)).mul(duration));
+        DoubleVector newY = y.add(velocity.mul(robotDirection.lanewise(VectorOperators.SIN)).mul(duration));
+        DoubleVector newDirection = robotDirection.add(angularVelocity.mul(duration));
+        newDirection = newDirection
+                .add(twoPi, newDirection.lt(0))
+                .sub(twoPi, newDirection.compare(VectorOperators.GE, twoPi));
+
+        newX.intoArray(world.positionX, base, moving);
+        newY.intoArray(world.positionY, base, moving);
+        newDirection.intoArray(world.direction, base, moving);
+    }
+
+    @Override
+    public String name() {
+        return "vector(" + SPECIES.length() + " lanes)";
+    }
+}
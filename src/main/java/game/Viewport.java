@@ -0,0 +1,104 @@
+package game;
+
+/**
+ * Камера игрового поля: задает увеличение и точку мира, которая видна в левом верхнем углу окна.
+ * Переводит координаты мира в экранные и обратно. Используется только из потока обработки событий.
+ */
+public class Viewport {
+
+    /**
+     * наименьшее увеличение
+     */
+    public static final double minZoom = 0.01;
+
+    /**
+     * наибольшее увеличение
+     */
+    public static final double maxZoom = 8.0;
+
+    /**
+     * увеличение: количество логических пикселей экрана на единицу модели
+     */
+    private double zoom = 1.0;
+
+    /**
+     * координаты мира, которые видны в левом верхнем углу окна
+     */
+    private double originX;
+    private double originY;
+
+    /**
+     * Возвращает увеличение.
+     *
+     * @return количество пикселей экрана на единицу модели
+     */
+    public double getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Переводит координату X мира в экранную.
+     *
+     * @param worldX координата X мира
+     * @return координата X на экране
+     */
+    public double toScreenX(double worldX) {
+        return (worldX - originX) * zoom;
+    }
+
+    /**
+     * Переводит координату Y мира в экранную.
+     *
+     * @param worldY координата Y мира
+     * @return координата Y на экране
+     */
+    public double toScreenY(double worldY) {
+        return (worldY - originY) * zoom;
+    }
+
+    /**
+     * Переводит экранную координату X в координату мира.
+     *
+     * @param screenX координата X на экране
+     * @return координата X мира
+     */
+    public double toWorldX(double screenX) {
+        return originX + screenX / zoom;
+    }
+
+    /**
+     * Переводит экранную координату Y в координату мира.
+     *
+     * @param screenY координата Y на экране
+     * @return координата Y мира
+     */
+    public double toWorldY(double screenY) {
+        return originY + screenY / zoom;
+    }
+
+    /**
+     * Меняет увеличение так, чтобы точка мира под указанной точкой экрана осталась на месте.
+     *
+     * @param screenX координата X точки экрана, например курсора
+     * @param screenY координата Y точки экрана
+     * @param factor  во сколько раз изменить увеличение
+     */
+    public void zoomAt(double screenX, double screenY, double factor) {
+        double worldX = toWorldX(screenX);
+        double worldY = toWorldY(screenY);
+        zoom = Math.max(minZoom, Math.min(maxZoom, zoom * factor));
+        originX = worldX - screenX / zoom;
+        originY = worldY - screenY / zoom;
+    }
+
+    /**
+     * Сдвигает камеру так, чтобы изображение сместилось на указанное число пикселей экрана.
+     *
+     * @param screenDX сдвиг изображения по X
+     * @param screenDY сдвиг изображения по Y
+     */
+    public void pan(double screenDX, double screenDY) {
+        originX -= screenDX / zoom;
+        originY -= screenDY / zoom;
+    }
+}
@@ -0,0 +1,18 @@
+package game;
+
+/**
+ * Слушатель изменений мира роботов.
+ * Вызывается не на каждом такте симуляции, а не чаще частоты кадров {@link RenderScheduler},
+ * и только если мир изменился с прошлого вызова. Окна подписываются через общий
+ * {@link RenderContext}, который забирает снимок мира один раз за кадр.
+ */
+public interface WorldChangeListener {
+
+    /**
+     * Вызывается в потоке обработки событий, если мир изменился с прошлого кадра.
+     *
+     * @param world   изменившийся мир
+     * @param version версия снимка мира, который можно забрать в этом кадре
+     */
+    void onWorldChanged(RobotWorld world, long version);
+}
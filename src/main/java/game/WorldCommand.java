@@ -0,0 +1,67 @@
+package game;
+
+/**
+ * Команда, изменяющая мир роботов. Команды отправляются из любых потоков через
+ * {@link RobotWorld#submit(WorldCommand)} и применяются только потоком симуляции
+ * в начале такта, поэтому сама модель остается однопоточной.
+ */
+public interface WorldCommand {
+
+    /**
+     * Применяет команду к миру. Вызывается только потоком симуляции.
+     *
+     * @param world мир роботов
+     */
+    void apply(RobotWorld world);
+
+    /**
+     * Команда установки цели робота.
+     *
+     * @param index   индекс робота
+     * @param targetX координата цели по x
+     * @param targetY координата цели по y
+     * @return команда
+     */
+    static WorldCommand setTarget(int index, int targetX, int targetY) {
+        return world -> {
+            if (index < world.getRobotCount()) {
+                world.setTargetPosition(index, targetX, targetY);
+            }
+        };
+    }
+
+    /**
+     * Команда добавления робота в указанную позицию.
+     *
+     * @param x координата X
+     * @param y координата Y
+     * @return команда
+     */
+    static WorldCommand spawn(double x, double y) {
+        return world -> world.addRobot(x, y);
+    }
+
+    /**
+     * Команда удаления робота. На место удаленного переносится последний робот мира.
+     *
+     * @param index индекс робота
+     * @return команда
+     */
+    static WorldCommand remove(int index) {
+        return world -> {
+            if (index < world.getRobotCount()) {
+                world.removeRobot(index);
+            }
+        };
+    }
+
+    /**
+     * Команда приостановки или возобновления движения роботов.
+     *
+     * @param paused true — приостановить, false — возобновить
+     * @return команда
+     */
+    static WorldCommand pause(boolean paused) {
+        return world -> world.setPaused(paused);
+    }
+}
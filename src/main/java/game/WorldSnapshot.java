@@ -0,0 +1,308 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Согласованный снимок состояния мира роботов на момент одного шага.
+ * Заполняется потоком симуляции и после публикации через {@link SnapshotExchange}
+ * не изменяется, пока читатель не вернет его обратно при получении более нового снимка.
+ *
+ * <p>Снимок обновляется частично: копируются только роботы, изменившиеся с тех пор,
+ * как этот же буфер заполнялся в прошлый раз. Вместе с ними обновляются сетки {@link SpatialGrid}
+ * положений и целей, по которым отрисовка находит роботов видимой области, не перебирая всех.
+ */
+public class WorldSnapshot {
+
+    /**
+     * размер клетки сеток поиска в единицах модели
+     */
+    private static final double gridCellSize = 32;
+
+    private int count;
+
+    /**
+     * версия мира, с которой снят снимок; -1 — снимок еще не заполнялся
+     */
+    private long version = -1;
+    private long stateNanos;
+    private long stepNanos;
+
+    private double[] positionX = new double[0];
+    private double[] positionY = new double[0];
+    private double[] direction = new double[0];
+    private double[] previousX = new double[0];
+    private double[] previousY = new double[0];
+    private double[] previousDirection = new double[0];
+    private int[] targetX = new int[0];
+    private int[] targetY = new int[0];
+
+    /**
+     * роботы по текущему положению и по цели
+     */
+    private final SpatialGrid robotGrid = new SpatialGrid(gridCellSize);
+    private final SpatialGrid targetGrid = new SpatialGrid(gridCellSize);
+
+    /**
+     * не меньше наибольшего смещения робота между предыдущим и текущим шагом по каждой оси;
+     * на столько расширяется область поиска, чтобы найти роботов по интерполированному положению
+     */
+    private double maxStepDistance;
+
+    /**
+     * индексы роботов, изменившихся после последнего заполнения этого буфера; повторы допустимы.
+     * Используются только потоком симуляции, читатель их не трогает.
+     */
+    private int[] pending = new int[0];
+    private int pendingCount;
+
+    /**
+     * изменений накопилось столько, что при следующем заполнении дешевле скопировать все
+     */
+    private boolean fullCopy;
+
+    /**
+     * Запоминает роботов, изменившихся после публикации другого буфера, чтобы скопировать их,
+     * когда этот буфер будет заполняться. Вызывается только потоком симуляции.
+     *
+     * @param indices    индексы изменившихся роботов
+     * @param n          количество индексов
+     * @param robotCount количество роботов в мире
+     */
+    void remember(int[] indices, int n, int robotCount) {
+        if (fullCopy) {
+            return;
+        }
+        if (pendingCount + n >= robotCount) {
+            fullCopy = true;
+            pendingCount = 0;
+            return;
+        }
+        if (pending.length < pendingCount + n) {
+            pending = Arrays.copyOf(pending, Math.max(pendingCount + n, pending.length * 2));
+        }
+        System.arraycopy(indices, 0, pending, pendingCount, n);
+        pendingCount += n;
+    }
+
+    /**
+     * Обновляет снимок до текущего состояния мира: копирует роботов, запомненных через
+     * {@link #remember}, и изменившихся с последней публикации. Вызывается только потоком симуляции.
+     *
+     * @param world мир роботов
+     */
+    void copyFrom(RobotWorld world) {
+        int n = world.getRobotCount();
+        if (positionX.length < n) {
+            int capacity = Math.max(n, positionX.length * 2);
+            positionX = Arrays.copyOf(positionX, capacity);
+            positionY = Arrays.copyOf(positionY, capacity);
+            direction = Arrays.copyOf(direction, capacity);
+            previousX = Arrays.copyOf(previousX, capacity);
+            previousY = Arrays.copyOf(previousY, capacity);
+            previousDirection = Arrays.copyOf(previousDirection, capacity);
+            targetX = Arrays.copyOf(targetX, capacity);
+            targetY = Arrays.copyOf(targetY, capacity);
+        }
+        if (fullCopy || pendingCount + world.dirtyCount >= n) {
+            System.arraycopy(world.positionX, 0, positionX, 0, n);
+            System.arraycopy(world.positionY, 0, positionY, 0, n);
+            System.arraycopy(world.direction, 0, direction, 0, n);
+            System.arraycopy(world.previousX, 0, previousX, 0, n);
+            System.arraycopy(world.previousY, 0, previousY, 0, n);
+            System.arraycopy(world.previousDirection, 0, previousDirection, 0, n);
+            System.arraycopy(world.targetPositionX, 0, targetX, 0, n);
+            System.arraycopy(world.targetPositionY, 0, targetY, 0, n);
+            robotGrid.clear();
+            targetGrid.clear();
+            maxStepDistance = 0;
+            for (int i = 0; i < n; i++) {
+                index(i);
+            }
+        } else {
+            for (int i = n; i < count; i++) {
+                robotGrid.remove(i);
+                targetGrid.remove(i);
+            }
+            copyRobots(world, pending, pendingCount, n);
+            copyRobots(world, world.dirty, world.dirtyCount, n);
+        }
+        pendingCount = 0;
+        fullCopy = false;
+        count = n;
+        version = world.getVersion();
+        stateNanos = world.getStateNanos();
+        stepNanos = world.getStepNanos();
+    }
+
+    /**
+     * Копирует состояние отдельных роботов; индексы за пределами мира пропускаются.
+     */
+    private void copyRobots(RobotWorld world, int[] indices, int n, int robotCount) {
+        for (int k = 0; k < n; k++) {
+            int i = indices[k];
+            if (i >= robotCount) {
+                continue;
+            }
+            positionX[i] = world.positionX[i];
+            positionY[i] = world.positionY[i];
+            direction[i] = world.direction[i];
+            previousX[i] = world.previousX[i];
+            previousY[i] = world.previousY[i];
+            previousDirection[i] = world.previousDirection[i];
+            targetX[i] = world.targetPositionX[i];
+            targetY[i] = world.targetPositionY[i];
+            index(i);
+        }
+    }
+
+    /**
+     * Записывает робота в сетки поиска.
+     */
+    private void index(int i) {
+        robotGrid.put(i, positionX[i], positionY[i]);
+        targetGrid.put(i, targetX[i], targetY[i]);
+        double step = Math.max(Math.abs(positionX[i] - previousX[i]), Math.abs(positionY[i] - previousY[i]));
+        if (step > maxStepDistance) {
+            maxStepDistance = step;
+        }
+    }
+
+    /**
+     * Находит роботов, которые при любом коэффициенте интерполяции могут оказаться в области мира.
+     * Найденные индексы лежат в {@link #getFoundRobots()} до следующего поиска; среди них
+     * могут быть роботы рядом с областью. Вызывается только потоком обработки событий.
+     *
+     * @param minX левая граница области в координатах мира
+     * @param minY верхняя граница области
+     * @param maxX правая граница области
+     * @param maxY нижняя граница области
+     * @return количество найденных роботов
+     */
+    public int findRobots(double minX, double minY, double maxX, double maxY) {
+        double margin = maxStepDistance;
+        return robotGrid.query(minX - margin, minY - margin, maxX + margin, maxY + margin);
+    }
+
+    /**
+     * @return индексы роботов, найденных последним вызовом {@link #findRobots}
+     */
+    public int[] getFoundRobots() {
+        return robotGrid.getFound();
+    }
+
+    /**
+     * Находит роботов, цели которых могут оказаться в области мира. Найденные индексы лежат
+     * в {@link #getFoundTargets()} до следующего поиска. Вызывается только потоком обработки событий.
+     *
+     * @param minX левая граница области в координатах мира
+     * @param minY верхняя граница области
+     * @param maxX правая граница области
+     * @param maxY нижняя граница области
+     * @return количество найденных роботов
+     */
+    public int findTargets(double minX, double minY, double maxX, double maxY) {
+        return targetGrid.query(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * @return индексы роботов, найденных последним вызовом {@link #findTargets}
+     */
+    public int[] getFoundTargets() {
+        return targetGrid.getFound();
+    }
+
+    /**
+     * @return количество роботов в снимке
+     */
+    public int getRobotCount() {
+        return count;
+    }
+
+    /**
+     * @return версия мира, с которой снят снимок
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Вычисляет коэффициент интерполяции между предыдущим и текущим шагом для указанного момента.
+     *
+     * @param nowNanos текущее время {@link System#nanoTime()}
+     * @return коэффициент интерполяции от 0 до 1
+     */
+    public double getInterpolationAlpha(long nowNanos) {
+        if (stepNanos == 0) {
+            return 1.0;
+        }
+        double alpha = (double) (nowNanos - stateNanos) / stepNanos;
+        return Math.max(0.0, Math.min(1.0, alpha));
+    }
+
+    /**
+     * Получает координату X робота.
+     * @param index индекс робота
+     */
+    public double getX(int index) {
+        return positionX[index];
+    }
+
+    /**
+     * Получает координату Y робота.
+     * @param index индекс робота
+     */
+    public double getY(int index) {
+        return positionY[index];
+    }
+
+    /**
+     * Получает направление робота в радианах.
+     * @param index индекс робота
+     */
+    public double getDirection(int index) {
+        return direction[index];
+    }
+
+    /**
+     * Получает координату цели робота по x.
+     * @param index индекс робота
+     */
+    public int getTargetX(int index) {
+        return targetX[index];
+    }
+
+    /**
+     * Получает координату цели робота по y.
+     * @param index индекс робота
+     */
+    public int getTargetY(int index) {
+        return targetY[index];
+    }
+
+    /**
+     * Получает координату X робота, интерполированную между предыдущим и текущим шагом.
+     * @param index индекс робота
+     * @param alpha коэффициент интерполяции
+     */
+    public double getInterpolatedX(int index, double alpha) {
+        return previousX[index] + (positionX[index] - previousX[index]) * alpha;
+    }
+
+    /**
+     * Получает координату Y робота, интерполированную между предыдущим и текущим шагом.
+     * @param index индекс робота
+     * @param alpha коэффициент интерполяции
+     */
+    public double getInterpolatedY(int index, double alpha) {
+        return previousY[index] + (positionY[index] - previousY[index]) * alpha;
+    }
+
+    /**
+     * Получает направление робота, интерполированное по кратчайшей дуге между предыдущим и текущим шагом.
+     * @param index индекс робота
+     * @param alpha коэффициент интерполяции
+     */
+    public double getInterpolatedDirection(int index, double alpha) {
+        return RobotWorld.interpolateAngle(previousDirection[index], direction[index], alpha);
+    }
+}
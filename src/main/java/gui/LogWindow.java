@@ -2,25 +2,80 @@ package gui;
 
 import java.awt.BorderLayout;
 import java.awt.EventQueue;
+import java.awt.FlowLayout;
 import java.awt.TextArea;
+import java.util.List;
 
+import javax.swing.JComboBox;
 import javax.swing.JInternalFrame;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import locale.LocalManager;
 import locale.LocalManagerInterface;
 import log.LogChangeListener;
 import log.LogEntry;
+import log.LogLevel;
+import log.LogQuery;
 import log.LogWindowSource;
 
 
 /**
  * Класс LogWindow представляет внутреннее окно с протоколом работы.
+ * Окно помнит номер последнего показанного сообщения и дописывает только новые сообщения,
+ * а когда лог вытесняет старые, удаляет столько же строк с начала. Поэтому обновление
+ * стоит столько, сколько новых строк, а не весь лог.
+ *
+ * <p>Панель фильтра над протоколом отбирает сообщения по уровню и тексту. Пока фильтр задан,
+ * окно показывает последние подходящие сообщения, найденные по индексу лога, и так же
+ * дописывает только новые подходящие сообщения.
  */
 public class LogWindow extends JInternalFrame implements LogChangeListener, LocalManagerInterface {
     private LogWindowSource m_logSource;
     private TextArea m_logContent;
 
+    /**
+     * сколько последних подходящих сообщений показывается при заданном фильтре
+     */
+    private static final int maxFilteredLines = 1000;
+
+    private JLabel m_levelLabel;
+    private JComboBox<String> m_levelFilter;
+    private JLabel m_textLabel;
+    private JTextField m_textFilter;
+
+    /**
+     * текущий фильтр; без условий окно дописывает новые сообщения
+     */
+    private LogQuery m_query = LogQuery.all;
+
+    /**
+     * признак смены подписи в списке уровней, во время которой фильтр не применяется
+     */
+    private boolean m_relabeling;
+
+    /**
+     * номер, с которого ищутся следующие сообщения для показа
+     */
+    private long m_nextSequence;
+
+    /**
+     * длины показанных строк вместе с переводом строки и номера их сообщений,
+     * от старых к новым (кольцевой буфер)
+     */
+    private int[] m_lineLengths = new int[16];
+    private long[] m_lineSequences = new long[16];
+    private int m_lineHead;
+    private int m_lineCount;
+
+    /**
+     * текст новых строк, собираемый за одно обновление
+     */
+    private final StringBuilder m_appended = new StringBuilder();
+
     /**
      * Создает новый экземпляр LogWindow с указанным источником протокола работы.
      *
@@ -34,6 +89,7 @@ public class LogWindow extends JInternalFrame implements LogChangeListener, Loca
         m_logContent.setSize(200, 500);
 
         JPanel panel = new JPanel(new BorderLayout());
+        panel.add(createFilterBar(), BorderLayout.NORTH);
         panel.add(m_logContent, BorderLayout.CENTER);
         getContentPane().add(panel);
         pack();
@@ -41,27 +97,168 @@ public class LogWindow extends JInternalFrame implements LogChangeListener, Loca
     }
 
     /**
-     * Обновляет содержимое протокола работы.
+     * Создает панель фильтра: наименьший уровень и искомый текст.
+     */
+    private JPanel createFilterBar() {
+        m_levelLabel = new JLabel(LocalManager.getStringLocal("filterLevel"));
+        m_levelFilter = new JComboBox<>();
+        m_levelFilter.addItem(LocalManager.getStringLocal("allLevels"));
+        for (LogLevel level : LogLevel.values()) {
+            m_levelFilter.addItem(level.name());
+        }
+        m_levelFilter.addActionListener(event -> {
+            if (!m_relabeling) {
+                applyFilter();
+            }
+        });
+
+        m_textLabel = new JLabel(LocalManager.getStringLocal("filterText"));
+        m_textFilter = new JTextField(12);
+        m_textFilter.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+        });
+
+        JPanel filterBar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterBar.add(m_levelLabel);
+        filterBar.add(m_levelFilter);
+        filterBar.add(m_textLabel);
+        filterBar.add(m_textFilter);
+        return filterBar;
+    }
+
+    /**
+     * Применяет фильтр из панели: протокол строится заново и дальше снова только дописывается.
+     */
+    private void applyFilter() {
+        int levelIndex = m_levelFilter.getSelectedIndex();
+        m_query = LogQuery.all
+                .withMinLevel(levelIndex <= 0 ? null : LogLevel.values()[levelIndex - 1])
+                .withText(m_textFilter.getText());
+        m_logContent.setText("");
+        m_nextSequence = 0;
+        m_lineHead = 0;
+        m_lineCount = 0;
+        refreshLogContent();
+    }
+
+    /**
+     * Дописывает подходящие под фильтр сообщения, добавленные после последнего показанного.
+     * Индекс перебирает только номера из списков подходящих слов и уровней, поэтому обновление
+     * стоит столько, сколько новых подходящих сообщений; показываются не больше
+     * {@link #maxFilteredLines} последних из них.
+     */
+    private void showFilteredContent() {
+        List<LogEntry> entries = m_logSource.query(
+                m_query.withSequenceRange(m_nextSequence, Long.MAX_VALUE), maxFilteredLines);
+        m_appended.setLength(0);
+        for (LogEntry entry : entries) {
+            appendLine(entry, entry.getSequence());
+        }
+        if (!entries.isEmpty()) {
+            m_nextSequence = entries.get(entries.size() - 1).getSequence() + 1;
+        }
+        showAppended(maxFilteredLines);
+    }
+
+    /**
+     * Обновляет протокол после появления новых сообщений.
+     */
+    private void refreshLogContent() {
+        if (m_query.isUnrestricted()) {
+            updateLogContent();
+        } else {
+            showFilteredContent();
+        }
+    }
+
+    /**
+     * Дописывает в протокол сообщения, появившиеся после последнего обновления,
+     * и удаляет самые старые строки, уже вытесненные из лога.
      */
     private void updateLogContent() {
-        StringBuilder content = new StringBuilder();
-        for (LogEntry entry : m_logSource.all()) {
-            content.append(entry.getMessage()).append("\n");
+        m_appended.setLength(0);
+        m_nextSequence = m_logSource.read(m_nextSequence, Integer.MAX_VALUE, this::appendLine);
+        showAppended(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Дописывает собранный текст новых строк в протокол и удаляет с начала строки сообщений,
+     * уже вытесненных из лога, и строки сверх указанного количества.
+     *
+     * @param maxLines наибольшее количество строк в протоколе
+     */
+    private void showAppended(int maxLines) {
+        if (m_appended.length() == 0) {
+            return;
+        }
+        m_logContent.append(m_appended.toString());
+        long firstSequence = m_logSource.getFirstSequence();
+        int removed = 0;
+        while (m_lineCount > maxLines || (m_lineCount > 0 && m_lineSequences[m_lineHead] < firstSequence)) {
+            removed += m_lineLengths[m_lineHead];
+            m_lineHead = (m_lineHead + 1) % m_lineLengths.length;
+            m_lineCount--;
+        }
+        if (removed > 0) {
+            m_logContent.replaceRange("", 0, removed);
+        }
+    }
+
+    /**
+     * Добавляет строку сообщения к новому тексту и запоминает ее длину и номер сообщения.
+     */
+    private void appendLine(LogEntry entry, long sequence) {
+        int start = m_appended.length();
+        m_appended.append(entry.getMessage()).append("\n");
+        if (m_lineCount == m_lineLengths.length) {
+            int[] lengths = new int[m_lineLengths.length * 2];
+            long[] sequences = new long[lengths.length];
+            for (int i = 0; i < m_lineCount; i++) {
+                lengths[i] = m_lineLengths[(m_lineHead + i) % m_lineLengths.length];
+                sequences[i] = m_lineSequences[(m_lineHead + i) % m_lineLengths.length];
+            }
+            m_lineLengths = lengths;
+            m_lineSequences = sequences;
+            m_lineHead = 0;
         }
-        m_logContent.setText(content.toString());
-        m_logContent.invalidate();
+        int slot = (m_lineHead + m_lineCount) % m_lineLengths.length;
+        m_lineLengths[slot] = m_appended.length() - start;
+        m_lineSequences[slot] = sequence;
+        m_lineCount++;
     }
 
     /**
-     * Вызывается при изменении протокола работы.
+     * Вызывается при изменении протокола работы. Уведомления уже объединены источником,
+     * поэтому в очередь событий попадает не больше одного обновления за интервал сброса.
      */
     @Override
-    public void onLogChanged() {
-        EventQueue.invokeLater(this::updateLogContent);
+    public void onLogChanged(long fromSequence, long toSequence) {
+        EventQueue.invokeLater(this::refreshLogContent);
     }
 
     @Override
     public void localization() {
         setTitle(LocalManager.getStringLocal("logWindow"));
+        m_levelLabel.setText(LocalManager.getStringLocal("filterLevel"));
+        m_textLabel.setText(LocalManager.getStringLocal("filterText"));
+        m_relabeling = true;
+        int selected = m_levelFilter.getSelectedIndex();
+        m_levelFilter.removeItemAt(0);
+        m_levelFilter.insertItemAt(LocalManager.getStringLocal("allLevels"), 0);
+        m_levelFilter.setSelectedIndex(selected);
+        m_relabeling = false;
     }
 }
@@ -20,8 +20,8 @@ public class MainApplicationFrame extends JFrame {
     private final StateManager stateManager;
     private CoordinatesWindow robotCoordinates;
     private RobotModel robotModel;
+    private RenderContext renderContext;
     private GameController gameController;
-    private GameVisualizer gameVisualizer;
 
     /**
      * Создает новый экземпляр главного окна приложения.
@@ -40,13 +40,11 @@ public class MainApplicationFrame extends JFrame {
         addWindow(logWindow);
 
         robotModel = new RobotModel(100, 100);
-        GameWindow gameWindow = new GameWindow(robotModel);
-        gameWindow.setSize(400, 400);
-        addWindow(gameWindow);
-        gameVisualizer = new GameVisualizer(robotModel);
-        gameController = new GameController(robotModel, gameVisualizer);
+        renderContext = new RenderContext(robotModel);
+        GameWindow gameWindow = openGameWindow();
+        gameController = new GameController(robotModel);
 
-        robotCoordinates = new CoordinatesWindow(robotModel);
+        robotCoordinates = new CoordinatesWindow(renderContext);
         addWindow(robotCoordinates);
 
         stateManager = new StateManager(this, logWindow, gameWindow, robotCoordinates);
@@ -100,6 +98,19 @@ public class MainApplicationFrame extends JFrame {
         return logWindow;
     }
 
+    /**
+     * Открывает еще одно окно игрового поля. Все окна смотрят на один мир через общий
+     * контекст отрисовки, у каждого окна своя камера.
+     *
+     * @return открытое окно
+     */
+    GameWindow openGameWindow() {
+        GameWindow gameWindow = new GameWindow(renderContext);
+        gameWindow.setSize(400, 400);
+        addWindow(gameWindow);
+        return gameWindow;
+    }
+
     /**
      * Добавляет внутреннее окно в рабочее пространство.
      *
@@ -24,8 +24,12 @@ public class MenuBar extends JMenuBar implements LocalManagerInterface {
 
      JMenu languageMenu;
 
+     JMenu windowsMenu;
+
      JMenuItem addLogMessageItem;
 
+     JMenuItem newGameWindowItem;
+
      JMenuItem crossplatformLookAndFeel;
 
      JMenuItem systemLookAndFeel;
@@ -44,6 +48,7 @@ public class MenuBar extends JMenuBar implements LocalManagerInterface {
         JMenuBar menuBar = new JMenuBar();
         buildLookAndFeelMenu(menuBar);
         buildTestMenu(menuBar);
+        buildWindowsMenu(menuBar);
         buildExitMenu(menuBar);
         buildLanguageMenu(menuBar);
         this.applicationFrame = applicationFrame;
@@ -100,6 +105,21 @@ public class MenuBar extends JMenuBar implements LocalManagerInterface {
     }
 
 
+    /**
+     * Строит меню "Окна", позволяющее открыть дополнительные окна игрового поля.
+     */
+    private void buildWindowsMenu(JMenuBar menuBar) {
+        windowsMenu = new JMenu(LocalManager.getStringLocal("windowsMenu"));
+        windowsMenu.setMnemonic(KeyEvent.VK_W);
+
+        newGameWindowItem = new JMenuItem(LocalManager.getStringLocal("newGameWindow"), KeyEvent.VK_N);
+        newGameWindowItem.addActionListener((event) -> {
+            applicationFrame.openGameWindow();
+        });
+        windowsMenu.add(newGameWindowItem);
+        menuBar.add(windowsMenu);
+    }
+
     /**
      * Строит меню "Выход", позволяющее закрыть приложение.
      */
@@ -159,6 +179,8 @@ public class MenuBar extends JMenuBar implements LocalManagerInterface {
         testMenu.setText(LocalManager.getStringLocal("testMenu"));
         lookAndFeelMenu.setText(LocalManager.getStringLocal("lookAndFeelMenu"));
         languageMenu.setText(LocalManager.getStringLocal("languageMenu"));
+        windowsMenu.setText(LocalManager.getStringLocal("windowsMenu"));
+        newGameWindowItem.setText(LocalManager.getStringLocal("newGameWindow"));
         addLogMessageItem.setText(LocalManager.getStringLocal("addLogMessageItem"));
         crossplatformLookAndFeel.setText(LocalManager.getStringLocal("crossplatformLookAndFeel"));
         systemLookAndFeel.setText(LocalManager.getStringLocal("systemLookAndFeel"));
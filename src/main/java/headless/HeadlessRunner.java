@@ -0,0 +1,328 @@
+package headless;
+
+import game.RobotWorld;
+import game.SimulationClock;
+import game.SimulationLoop;
+import game.StepKernel;
+import game.StepKernels;
+import game.WorldCommand;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Точка входа для запуска симуляции без дисплея и Swing.
+ * Создает мир из заданного числа роботов, двигает их так быстро, как возможно,
+ * или с фиксированной частотой, и печатает пропускную способность:
+ * шаги в секунду, наносекунды на шаг одного движущегося робота и скорость выделения памяти
+ * потоком симуляции и потоками параллельного шага.
+ *
+ * <p>Параметры командной строки:
+ * <pre>
+ *   --robots N      количество роботов (по умолчанию 10000)
+ *   --rate R        частота тактов в герцах или "max" (по умолчанию max)
+ *   --seconds S     длительность замера в секундах (по умолчанию 10)
+ *   --warmup S      длительность прогрева в секундах (по умолчанию 3)
+ *   --field F       размер поля, по которому расставляются роботы и цели (по умолчанию 1000)
+ *   --threads T     количество потоков для параллельного шага (по умолчанию 1)
+ *   --kernel K      ядро шага: scalar или vector (по умолчанию из свойства robots.kernel)
+ *   --commands C    сколько команд смены цели отправлять из отдельного потока за такт (по умолчанию 0)
+ * </pre>
+ */
+public class HeadlessRunner {
+
+    /**
+     * через сколько тактов роботам назначаются новые цели, чтобы они не останавливались
+     */
+    private static final int retargetPeriod = 1000;
+
+    /**
+     * за сколько тактов генератор нагрузки отправляет команды сразу, если отстал;
+     * за более ранние такты команды не отправляются, чтобы очередь не росла
+     */
+    private static final int maxCatchUpTicks = 4;
+
+    private final RobotWorld world;
+    private final SimulationLoop loop;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final int field;
+    private final int robots;
+    private final int commandsPerTick;
+
+    /**
+     * потоки пула параллельного шага; их выделения памяти входят в замер
+     */
+    private final ConcurrentLinkedQueue<Thread> stepThreads = new ConcurrentLinkedQueue<>();
+
+    /**
+     * количество тактов, выполненных к концу последней порции шагов
+     */
+    private volatile long completedSteps;
+
+    /**
+     * количество команд, примененных к концу последней порции шагов
+     */
+    private volatile long appliedCommands;
+
+    /**
+     * количество шагов роботов к концу последней порции шагов
+     */
+    private volatile long steppedRobots;
+    private long nextRetarget = retargetPeriod;
+
+    /**
+     * поток генератора нагрузки, который будится после каждой порции шагов; null — генератора нет
+     */
+    private volatile Thread generator;
+
+    /**
+     * Создает симуляцию из указанного числа роботов.
+     *
+     * @param robots         количество роботов
+     * @param ticksPerSecond частота тактов, {@link SimulationClock#UNTHROTTLED} — без ограничения
+     * @param field          размер поля
+     * @param threads        количество потоков для параллельного шага
+     * @param commandsPerTick количество команд, отправляемых генератором нагрузки за такт
+     */
+    public HeadlessRunner(int robots, int ticksPerSecond, int field, int threads, int commandsPerTick) {
+        this.field = field;
+        this.robots = robots;
+        this.commandsPerTick = commandsPerTick;
+        this.world = new RobotWorld(robots);
+        for (int i = 0; i < robots; i++) {
+            world.addRobot(random.nextInt(field), random.nextInt(field));
+        }
+        retarget();
+        if (threads > 1) {
+            world.setStepPool(new ForkJoinPool(threads, pool -> {
+                ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                stepThreads.add(worker);
+                return worker;
+            }, null, false));
+        }
+        this.loop = new SimulationLoop(world, SimulationClock.atRate(ticksPerSecond), this::onStepped);
+    }
+
+    /**
+     * Вызывается в потоке симуляции после каждой порции шагов.
+     */
+    private void onStepped() {
+        long steps = loop.getClock().getTotalSteps();
+        if (steps >= nextRetarget) {
+            retarget();
+            nextRetarget = steps + retargetPeriod;
+        }
+        appliedCommands = world.getAppliedCommands();
+        steppedRobots = world.getSteppedRobots();
+        completedSteps = steps;
+        Thread commandThread = generator;
+        if (commandThread != null) {
+            LockSupport.unpark(commandThread);
+        }
+    }
+
+    /**
+     * Назначает всем роботам новые случайные цели.
+     */
+    private void retarget() {
+        for (int i = 0; i < world.getRobotCount(); i++) {
+            world.setTargetPosition(i, random.nextInt(field), random.nextInt(field));
+        }
+    }
+
+    /**
+     * Генератор нагрузки: из отдельного потока отправляет по {@code commandsPerTick} команд
+     * смены цели на каждый выполненный такт. Поток просыпается после каждой порции шагов;
+     * если он отстал больше чем на {@link #maxCatchUpTicks} тактов, команды за более ранние
+     * такты не отправляются, поэтому команд в очереди не больше, чем мир применит за несколько тактов.
+     */
+    private void generateCommands() {
+        SplittableRandom commandRandom = new SplittableRandom(17);
+        long issuedSteps = completedSteps;
+        while (!Thread.currentThread().isInterrupted()) {
+            long steps = completedSteps;
+            long ticks = Math.min(steps - issuedSteps, maxCatchUpTicks);
+            issuedSteps = steps;
+            for (long i = 0; i < ticks * commandsPerTick; i++) {
+                world.submit(WorldCommand.setTarget(commandRandom.nextInt(robots),
+                        commandRandom.nextInt(field), commandRandom.nextInt(field)));
+            }
+            if (completedSteps == issuedSteps) {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    /**
+     * Запускает симуляцию, выполняет прогрев и замер, затем останавливает ее.
+     *
+     * @param warmupMillis  длительность прогрева
+     * @param measureMillis длительность замера
+     * @return результат замера
+     * @throws InterruptedException если ожидание было прервано
+     */
+    public Result run(long warmupMillis, long measureMillis) throws InterruptedException {
+        Thread thread = new Thread(loop, "headless simulation");
+        thread.setDaemon(true);
+        thread.start();
+        if (commandsPerTick > 0) {
+            generator = new Thread(this::generateCommands, "command generator");
+            generator.setDaemon(true);
+            generator.start();
+        }
+        Thread.sleep(warmupMillis);
+
+        long startSteps = completedSteps;
+        long startCommands = appliedCommands;
+        long startRobotSteps = steppedRobots;
+        long startBytes = allocatedBytes(thread);
+        long startNanos = System.nanoTime();
+        Thread.sleep(measureMillis);
+        long endSteps = completedSteps;
+        long endCommands = appliedCommands;
+        long endRobotSteps = steppedRobots;
+        long endBytes = allocatedBytes(thread);
+        long endNanos = System.nanoTime();
+
+        Thread commandThread = generator;
+        if (commandThread != null) {
+            generator = null;
+            commandThread.interrupt();
+            commandThread.join();
+        }
+        loop.stop();
+        thread.join();
+        return new Result(world.getRobotCount(), endSteps - startSteps, endRobotSteps - startRobotSteps,
+                endNanos - startNanos, endBytes < 0 || startBytes < 0 ? -1 : endBytes - startBytes, loop.getClock().getDroppedSteps(), endCommands - startCommands,
+                world.getActiveCount());
+    }
+
+    /**
+     * Возвращает количество байт, выделенных потоком симуляции и живыми потоками
+     * параллельного шага с момента их запуска.
+     *
+     * @param thread поток симуляции
+     * @return количество байт или -1, если JVM не поддерживает замер
+     */
+    private long allocatedBytes(Thread thread) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long total = threads.getThreadAllocatedBytes(thread.threadId());
+        for (Thread worker : stepThreads) {
+            long bytes = threads.getThreadAllocatedBytes(worker.threadId());
+            if (bytes > 0) {
+                total += bytes; // у завершившегося потока замер недоступен
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Результат замера пропускной способности.
+     */
+    public static class Result {
+        private final int robots;
+        private final long steps;
+        private final long robotSteps;
+        private final long nanos;
+        private final long allocatedBytes;
+        private final long droppedSteps;
+        private final long commands;
+        private final int activeRobots;
+
+        Result(int robots, long steps, long robotSteps, long nanos, long allocatedBytes, long droppedSteps,
+               long commands, int activeRobots) {
+            this.robots = robots;
+            this.steps = steps;
+            this.robotSteps = robotSteps;
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+            this.droppedSteps = droppedSteps;
+            this.commands = commands;
+            this.activeRobots = activeRobots;
+        }
+
+        /**
+         * @return количество тактов мира в секунду
+         */
+        public double stepsPerSecond() {
+            return steps * 1e9 / nanos;
+        }
+
+        /**
+         * @return шагов движущихся роботов в секунду
+         */
+        public double robotStepsPerSecond() {
+            return robotSteps * 1e9 / nanos;
+        }
+
+        /**
+         * @return наносекунды на шаг одного движущегося робота; спящие роботы не шагают и не считаются
+         */
+        public double nanosPerRobotStep() {
+            return robotSteps == 0 ? Double.NaN : (double) nanos / robotSteps;
+        }
+
+        /**
+         * @return байт, выделенных за секунду потоком симуляции и потоками параллельного шага
+         */
+        public double allocatedBytesPerSecond() {
+            return allocatedBytes < 0 ? Double.NaN : allocatedBytes * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "robots=%d (moving at end %d) steps=%d time=%.2fs%n" +
+                    "steps/sec=%.1f robot-steps/sec=%.3e ns/robot-step=%.3f%n" +
+                    "allocation (simulation and step threads)=%d bytes (%.1f bytes/sec) dropped steps=%d%n" +
+                    "commands applied=%d (%.1f/sec)",
+                    robots, activeRobots, steps, nanos / 1e9,
+                    stepsPerSecond(), robotStepsPerSecond(), nanosPerRobotStep(),
+                    allocatedBytes, allocatedBytesPerSecond(), droppedSteps,
+                    commands, commands * 1e9 / nanos);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        int robots = 10_000;
+        int rate = SimulationClock.UNTHROTTLED;
+        double seconds = 10;
+        double warmup = 3;
+        int field = 1000;
+        int threads = 1;
+        int commands = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--robots" -> robots = Integer.parseInt(value);
+                case "--rate" -> rate = SimulationClock.parseRate(value);
+                case "--seconds" -> seconds = Double.parseDouble(value);
+                case "--warmup" -> warmup = Double.parseDouble(value);
+                case "--field" -> field = Integer.parseInt(value);
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--kernel" -> System.setProperty("robots.kernel", value);
+                case "--commands" -> commands = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        HeadlessRunner runner = new HeadlessRunner(robots, rate, field, threads, commands);
+        Result result = runner.run((long) (warmup * 1000), (long) (seconds * 1000));
+        StepKernel kernel = StepKernels.defaultKernel();
+        if (kernel == StepKernels.scalar()) {
+            System.out.println("kernel=" + kernel.name());
+        } else {
+            System.out.printf("kernel=%s max step error vs scalar=%.3e%n",
+                    kernel.name(), StepKernels.maxStepError(kernel, 4096, 20));
+        }
+        System.out.println(result);
+    }
+}
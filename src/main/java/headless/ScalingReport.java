@@ -0,0 +1,147 @@
+package headless;
+
+import game.RobotWorld;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Отчет о масштабировании параллельного шага мира роботов.
+ * Для каждого размера мира (по умолчанию 10 тыс., 100 тыс. и 1 млн роботов) и каждого
+ * количества потоков от 1 до числа доступных ядер замеряет время шага и ускорение
+ * относительно последовательного шага, а также проверяет, что параллельный шаг
+ * дает побитово тот же результат, что и последовательный.
+ *
+ * <p>Параметры командной строки:
+ * <pre>
+ *   --sizes A,B,C   размеры мира (по умолчанию 10000,100000,1000000)
+ *   --steps S       количество замеряемых шагов (по умолчанию 200)
+ *   --threads T     максимальное количество потоков (по умолчанию число ядер)
+ * </pre>
+ */
+public class ScalingReport {
+
+    /**
+     * размер поля; достаточно велик, чтобы роботы не достигали целей за время замера
+     */
+    private static final int field = 1_000_000;
+
+    private static final double stepDuration = 10.0;
+
+    /**
+     * Создает мир из указанного числа роботов со случайными позициями и целями.
+     *
+     * @param robots количество роботов
+     * @return новый мир
+     */
+    static RobotWorld createWorld(int robots) {
+        SplittableRandom random = new SplittableRandom(7);
+        RobotWorld world = new RobotWorld(robots);
+        for (int i = 0; i < robots; i++) {
+            int index = world.addRobot(random.nextInt(field), random.nextInt(field));
+            world.setTargetPosition(index, random.nextInt(field), random.nextInt(field));
+        }
+        return world;
+    }
+
+    /**
+     * Замеряет среднее время шага мира.
+     *
+     * @param world мир роботов
+     * @param steps количество шагов
+     * @return среднее время шага в наносекундах
+     */
+    private static double measure(RobotWorld world, int steps) {
+        for (int i = 0; i < steps / 4 + 1; i++) {
+            world.moveRobots(stepDuration);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < steps; i++) {
+            world.moveRobots(stepDuration);
+        }
+        return (double) (System.nanoTime() - start) / steps;
+    }
+
+    /**
+     * Проверяет, что после одинакового числа шагов состояния двух миров совпадают побитово.
+     *
+     * @return true, если состояния совпадают
+     */
+    private static boolean sameState(RobotWorld expected, RobotWorld actual) {
+        for (int i = 0; i < expected.getRobotCount(); i++) {
+            if (Double.doubleToRawLongBits(expected.getX(i)) != Double.doubleToRawLongBits(actual.getX(i))
+                    || Double.doubleToRawLongBits(expected.getY(i)) != Double.doubleToRawLongBits(actual.getY(i))
+                    || Double.doubleToRawLongBits(expected.getDirection(i))
+                    != Double.doubleToRawLongBits(actual.getDirection(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает ряд количеств потоков: степени двойки до максимума и сам максимум.
+     */
+    private static List<Integer> threadCounts(int maxThreads) {
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            counts.add(threads);
+        }
+        counts.add(maxThreads);
+        return counts;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int[] sizes = {10_000, 100_000, 1_000_000};
+        int steps = 200;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--sizes" -> {
+                    String[] parts = value.split(",");
+                    sizes = new int[parts.length];
+                    for (int j = 0; j < parts.length; j++) {
+                        sizes[j] = Integer.parseInt(parts[j].trim());
+                    }
+                }
+                case "--steps" -> steps = Integer.parseInt(value);
+                case "--threads" -> maxThreads = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        System.out.printf("%10s %8s %14s %14s %8s %10s%n",
+                "robots", "threads", "us/step", "ns/robot-step", "speedup", "identical");
+        for (int robots : sizes) {
+            double sequential = 0;
+            for (int threads : threadCounts(maxThreads)) {
+                RobotWorld world = createWorld(robots);
+                ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+                world.setStepPool(pool);
+                double nanos = measure(world, steps);
+                if (threads == 1) {
+                    sequential = nanos;
+                }
+
+                RobotWorld reference = createWorld(robots);
+                RobotWorld parallel = createWorld(robots);
+                parallel.setStepPool(pool);
+                for (int s = 0; s < 10; s++) {
+                    reference.moveRobots(stepDuration);
+                    parallel.moveRobots(stepDuration);
+                }
+                boolean identical = sameState(reference, parallel);
+                if (pool != null) {
+                    pool.shutdown();
+                }
+
+                System.out.printf("%10d %8d %14.1f %14.3f %8.2f %10s%n",
+                        robots, threads, nanos / 1000, nanos / robots, sequential / nanos, identical);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package locale;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Обходит окна приложения и обновляет их локализацию.
+ * Вынесен из {@link LocalManager}, чтобы получение локализованных строк
+ * не требовало загрузки классов AWT и Swing.
+ */
+class LanguageUpdater {
+
+    private LanguageUpdater() {
+    }
+
+    /**
+     * Обновляет локализацию всех окон в приложении.
+     */
+    static void updateAllFrames() {
+        Frame[] frames = JFrame.getFrames(); // Получаем все фреймы приложения
+        for (Frame frame : frames) {
+            updateFrameLanguage(frame);
+        }
+    }
+
+    /**
+     * Обновляет локализацию для указанного фрейма и его компонентов.
+     */
+    private static void updateFrameLanguage(Frame frame) {
+        if (frame instanceof LocalManagerInterface) {
+            ((LocalManagerInterface) frame).localization();
+        }
+        if (frame instanceof JFrame) {
+            updateComponentsLanguage(((JFrame) frame).getRootPane());
+        }
+    }
+
+    /**
+     * Обновляет локализацию для компонентов внутри указанного контейнера.
+     */
+    private static void updateComponentsLanguage(Container container) {
+        for (Component component : container.getComponents()) {
+            if (component instanceof LocalManagerInterface) {
+                ((LocalManagerInterface) component).localization();
+            }
+            if (component instanceof Container) {
+                updateComponentsLanguage((Container) component);
+            }
+        }
+    }
+}
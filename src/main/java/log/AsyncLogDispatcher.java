@@ -0,0 +1,310 @@
+package log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Асинхронная передача сообщений лога в отдельный поток записи.
+ *
+ * <p>Писатели кладут уровень и текст сообщения в заранее выделенное кольцо ячеек и сразу
+ * возвращаются: запись стоит одного сравнения с обменом и двух записей в массивы, без
+ * блокировок и без выделения памяти. Каждая ячейка хранит номер, по которому писатель
+ * узнает, что она свободна, а поток записи — что она заполнена. Единственный поток записи
+ * забирает сообщения пачками и передает их {@link LogSink}: логу {@link LogWindowSource},
+ * откуда они попадают к слушателям, или хранилищу на диске.
+ *
+ * <p>Если кольцо заполнено, сообщение обрабатывается по {@link LogOverflowPolicy};
+ * отброшенные сообщения подсчитываются. Сообщения, поставленные после {@link #close()},
+ * тоже считаются отброшенными.
+ *
+ * <p>Исключение получателя не останавливает поток записи: сообщение считается
+ * необработанным, первое такое исключение печатается, а поток продолжает разбирать
+ * очередь. Иначе писатели с политикой {@link LogOverflowPolicy#Block} ждали бы
+ * освобождения ячеек вечно.
+ */
+class AsyncLogDispatcher
+{
+    /**
+     * при политике {@link LogOverflowPolicy#Sample} принимается одно сообщение из стольких
+     */
+    private static final int sampleRate = 16;
+
+    /**
+     * наибольшее количество сообщений, забираемых потоком записи за один проход
+     */
+    private static final int batchSize = 256;
+
+    /**
+     * сколько поток записи спит без новых сообщений, прежде чем проверить кольцо снова
+     */
+    private static final long idleParkNanos = 10_000_000L;
+
+    private final LogSink target;
+    private final LogOverflowPolicy policy;
+    private final int mask;
+    private final LogLevel[] levels;
+    private final String[] messages;
+
+    /**
+     * время создания и поток каждого сообщения, запомненные в момент вызова
+     */
+    private final long[] timestamps;
+    private final long[] threadIds;
+
+    /**
+     * номер ячейки: равен позиции писателя, если ячейка свободна, и позиции + 1, если заполнена
+     */
+    private final AtomicLongArray sequences;
+
+    /**
+     * позиция следующего писателя
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * позиция потока записи; меняет только поток записи
+     */
+    private volatile long head;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * количество сообщений, на которых получатель бросил исключение; меняет только поток записи
+     */
+    private volatile long failed;
+    private final AtomicLong sampled = new AtomicLong();
+    private final Thread consumer;
+
+    /**
+     * признак того, что поток записи спит и его нужно разбудить
+     */
+    private volatile boolean consumerParked;
+
+    /**
+     * признак остановки: поток записи дописывает оставшиеся сообщения и завершается
+     */
+    private volatile boolean closed;
+
+    /**
+     * Создает очередь и запускает поток записи.
+     *
+     * @param target     получатель сообщений
+     * @param capacity   размер кольца, округляется вверх до степени двойки
+     * @param policy     политика при заполненном кольце
+     * @param threadName имя потока записи
+     */
+    AsyncLogDispatcher(LogSink target, int capacity, LogOverflowPolicy policy, String threadName)
+    {
+        if (capacity < 2 || capacity > 1 << 30)
+        {
+            throw new IllegalArgumentException("Invalid log queue capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.target = target;
+        this.policy = policy;
+        this.mask = size - 1;
+        this.levels = new LogLevel[size];
+        this.messages = new String[size];
+        this.timestamps = new long[size];
+        this.threadIds = new long[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+        {
+            sequences.set(i, i);
+        }
+        consumer = new Thread(this::drainLoop, threadName);
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Ставит сообщение в очередь к потоку записи.
+     *
+     * @param logLevel   уровень логирования
+     * @param strMessage текст сообщения
+     */
+    void offer(LogLevel logLevel, String strMessage)
+    {
+        offer(logLevel, strMessage, System.nanoTime(), Thread.currentThread().threadId());
+    }
+
+    /**
+     * Ставит в очередь сообщение, созданное раньше и, возможно, в другом потоке.
+     *
+     * @param logLevel       уровень логирования
+     * @param strMessage     текст сообщения
+     * @param timestampNanos монотонное время создания сообщения
+     * @param threadId       идентификатор потока, создавшего сообщение
+     */
+    void offer(LogLevel logLevel, String strMessage, long timestampNanos, long threadId)
+    {
+        if (closed)
+        {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (policy == LogOverflowPolicy.Sample && tail.get() - head > mask / 2
+                && sampled.getAndIncrement() % sampleRate != 0)
+        {
+            dropped.incrementAndGet();
+            return;
+        }
+        long position;
+        while (true)
+        {
+            position = tail.get();
+            long sequence = sequences.get((int) (position & mask));
+            if (sequence == position)
+            {
+                if (tail.compareAndSet(position, position + 1))
+                {
+                    break;
+                }
+            }
+            else if (sequence < position)
+            {
+                // кольцо заполнено: ячейку еще не освободил поток записи,
+                // а после остановки уже не освободит
+                if (policy != LogOverflowPolicy.Block || closed)
+                {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                if (consumerParked)
+                {
+                    wakeConsumer();
+                }
+                Thread.yield();
+            }
+        }
+        int slot = (int) (position & mask);
+        levels[slot] = logLevel;
+        messages[slot] = strMessage;
+        timestamps[slot] = timestampNanos;
+        threadIds[slot] = threadId;
+        sequences.set(slot, position + 1);
+        if (consumerParked)
+        {
+            wakeConsumer();
+        }
+    }
+
+    private void wakeConsumer()
+    {
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Останавливает поток записи, дождавшись, пока он передаст получателю все сообщения,
+     * поставленные в очередь до вызова. Сообщения, поставленные после, отбрасываются.
+     *
+     * @throws InterruptedException если ожидание прервано
+     */
+    void close() throws InterruptedException
+    {
+        closed = true;
+        wakeConsumer();
+        consumer.join();
+    }
+
+    /**
+     * Цикл потока записи: забирает сообщения пачками, а без сообщений спит.
+     */
+    private void drainLoop()
+    {
+        while (true)
+        {
+            if (drain() == 0)
+            {
+                if (closed && !hasPending())
+                {
+                    return;
+                }
+                consumerParked = true;
+                if (!hasPending())
+                {
+                    LockSupport.parkNanos(this, idleParkNanos);
+                }
+                consumerParked = false;
+            }
+        }
+    }
+
+    /**
+     * Добавляет в лог до {@link #batchSize} заполненных ячеек по порядку и освобождает их.
+     *
+     * @return количество добавленных сообщений
+     */
+    private int drain()
+    {
+        long position = head;
+        int count = 0;
+        while (count < batchSize)
+        {
+            int slot = (int) (position & mask);
+            if (sequences.get(slot) != position + 1)
+            {
+                break;
+            }
+            LogLevel logLevel = levels[slot];
+            String strMessage = messages[slot];
+            long timestampNanos = timestamps[slot];
+            long threadId = threadIds[slot];
+            messages[slot] = null;
+            sequences.set(slot, position + mask + 1);
+            position++;
+            count++;
+            try
+            {
+                target.append(logLevel, strMessage, timestampNanos, threadId);
+            }
+            catch (Throwable e)
+            {
+                if (failed++ == 0)
+                {
+                    System.err.println(Thread.currentThread().getName()
+                            + ": log message failed, further failures are only counted");
+                    e.printStackTrace();
+                }
+            }
+        }
+        head = position;
+        return count;
+    }
+
+    private boolean hasPending()
+    {
+        return sequences.get((int) (head & mask)) == head + 1;
+    }
+
+    /**
+     * Возвращает количество сообщений, отброшенных из-за заполненной очереди.
+     *
+     * @return количество отброшенных сообщений
+     */
+    long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Возвращает количество сообщений, на которых получатель бросил исключение.
+     *
+     * @return количество необработанных сообщений
+     */
+    long getFailedCount()
+    {
+        return failed;
+    }
+
+    /**
+     * Возвращает количество сообщений, ожидающих потока записи.
+     *
+     * @return длина очереди
+     */
+    int getPendingCount()
+    {
+        return (int) Math.max(0, tail.get() - head);
+    }
+}
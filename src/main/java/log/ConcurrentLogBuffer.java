@@ -2,73 +2,278 @@ package log;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjLongConsumer;
+import java.util.function.ToIntFunction;
 
 /**
- * Потокобезопасный буфер для хранения записей лога
+ * Потокобезопасный буфер для хранения записей лога.
+ *
+ * <p>Буфер — заранее выделенное кольцо, размер которого равен степени двойки не меньше емкости.
+ * Каждая запись получает порядковый номер, который только растет; запись с номером n лежит
+ * в ячейке {@code n & mask}. Писатель занимает номер одним атомарным увеличением счетчика, кладет
+ * запись в ячейку и публикует ее, записывая номер в отметку ячейки. Блокировок нет ни у
+ * писателей, ни у читателей.
+ *
+ * <p>Читатель сверяет отметку ячейки с нужным номером: запись еще не опубликована, если
+ * отметка меньше, и уже перезаписана, если писатели ушли вперед больше чем на размер кольца.
+ * Перезаписанные записи читатель пропускает, а не ждет писателей.
+ *
+ * <p>Кроме количества записей, буфер может ограничивать их суммарный размер в байтах.
+ * Тогда после добавления, превысившего бюджет, писатель, которому досталась блокировка
+ * вытеснения, освобождает самые старые ячейки, пока размер не уложится в бюджет; остальные
+ * писатели ее не ждут. Размер уходящей записи вычитает тот, кто забрал ее из ячейки:
+ * вытесняющий или писатель следующего круга. В размер входят и сами ячейки кольца,
+ * и память связанных с буфером структур, о которой сообщают через {@link #addRetainedBytes}.
  */
-    class ConcurrentLogBuffer<T> {
+class ConcurrentLogBuffer<T> {
 
-    private final int max_size_buffer; // максимальное кол-во элементов в буфере
-    private final ConcurrentLinkedDeque<T> buffer; //экземпляр, явл потокобезопасной реализацией ConcurrentLinkedDeque(двунаправленнной очереди)
-    private final ReentrantLock lock;
+    /**
+     * память одной ячейки кольца в байтах: ссылка на запись и отметка
+     */
+    static final int slotBytes = 4 + Long.BYTES;
+
+    private final int capacity; // максимальное кол-во записей, доступных для чтения
+    private final int mask;
+    private final AtomicReferenceArray<T> items;
+
+    /**
+     * номер записи, опубликованной в каждой ячейке
+     */
+    private final AtomicLongArray stamps;
+
+    /**
+     * номер следующей записи
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * наибольший суммарный размер записей в байтах и способ оценить размер записи;
+     * null — размер не ограничен
+     */
+    private final long byteBudget;
+    private final ToIntFunction<? super T> sizeOf;
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * номер первой записи, не вытесненной по размеру
+     */
+    private volatile long head;
 
     /**
      * Создает новый экземпляр буфера с указанной емкостью
      *
-     * @param max_size_buffer максимальный размер буфера
+     * @param capacity максимальный размер буфера
+     */
+    public ConcurrentLogBuffer(int capacity) {
+        this(capacity, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Создает новый экземпляр буфера с указанной емкостью и бюджетом памяти
+     *
+     * @param capacity   максимальное количество записей
+     * @param byteBudget наибольший суммарный размер записей в байтах
+     * @param sizeOf     оценка размера записи в байтах; null — размер не ограничен
      */
-    public ConcurrentLogBuffer(int max_size_buffer) {
-        this.max_size_buffer = max_size_buffer;
-        this.buffer = new ConcurrentLinkedDeque<>();
-        this.lock = new ReentrantLock();
+    public ConcurrentLogBuffer(int capacity, long byteBudget, ToIntFunction<? super T> sizeOf) {
+        if (byteBudget <= 0) {
+            throw new IllegalArgumentException("Invalid log buffer budget: " + byteBudget);
+        }
+        this.byteBudget = byteBudget;
+        this.sizeOf = sizeOf;
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid log buffer capacity: " + capacity);
+        }
+        int ringSize = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.capacity = capacity;
+        this.mask = ringSize - 1;
+        this.items = new AtomicReferenceArray<>(ringSize);
+        this.stamps = new AtomicLongArray(ringSize);
+        for (int slot = 0; slot < ringSize; slot++) {
+            stamps.set(slot, slot - ringSize); // ячейка свободна: в ней "опубликован" прошлый круг
+        }
+        if (sizeOf != null) {
+            retainedBytes.set((long) ringSize * slotBytes);
+        }
     }
 
     /**
-     * Добавляет элемент в буфер
+     * Добавляет элемент в буфер, вытесняя самый старый, если буфер заполнен
      *
      * @param item элемент для добавления
+     * @return порядковый номер записи
      */
-    public void add(T item) {
-        lock.lock();
-        try {
-            if (buffer.size() >= max_size_buffer) {
-                buffer.pollFirst(); // O(1)
+    public long add(T item) {
+        long sequence = claim();
+        publish(sequence, item);
+        return sequence;
+    }
+
+    /**
+     * Занимает номер для записи, которой нужен ее номер еще до добавления. Каждый занятый
+     * номер должен быть опубликован через {@link #publish}: до этого читатели на нем
+     * останавливаются.
+     *
+     * @return порядковый номер записи
+     */
+    public long claim() {
+        return tail.getAndIncrement();
+    }
+
+    /**
+     * Кладет запись с занятым номером в буфер и делает ее видимой читателям
+     *
+     * @param sequence номер, полученный от {@link #claim()}
+     * @param item     запись
+     */
+    public void publish(long sequence, T item) {
+        int slot = (int) (sequence & mask);
+        long previous = sequence - items.length();
+        while (stamps.get(slot) != previous) {
+            // писатель, отстающий на целый круг, еще не закончил запись в эту ячейку
+            Thread.onSpinWait();
+        }
+        T evicted = items.getAndSet(slot, item);
+        stamps.set(slot, sequence);
+        if (sizeOf != null) {
+            long bytes = retainedBytes.addAndGet(sizeOf.applyAsInt(item)
+                    - (evicted == null ? 0 : sizeOf.applyAsInt(evicted)));
+            if (bytes > byteBudget) {
+                evictOverBudget();
             }
-            buffer.addLast(item); // O(1)
-        } finally {
-            lock.unlock();
         }
     }
 
     /**
-     * Получает элементы из буфера в диапазоне от startIndex до endIndex
+     * Учитывает в размере буфера изменение памяти связанной с ним структуры, например индекса.
+     * Если размер превысил бюджет, вытесняет самые старые записи.
      *
-     * @param startIndex индекс начала диапазона (включительно)
-     * @param endIndex   индекс конца диапазона (исключительно)
-     * @return итерируемый объект, содержащий элементы из указанного диапазона
+     * @param delta изменение памяти в байтах
+     */
+    public void addRetainedBytes(long delta) {
+        if (sizeOf == null || delta == 0) {
+            return;
+        }
+        if (retainedBytes.addAndGet(delta) > byteBudget) {
+            evictOverBudget();
+        }
+    }
+
+    /**
+     * Освобождает самые старые ячейки, пока размер записей превышает бюджет. Если вытесняет
+     * другой писатель, возвращается сразу: тот продолжит, пока размер не уложится в бюджет.
      */
-    public Iterable<T> range(int startIndex, int endIndex) {
-        lock.lock();
+    private void evictOverBudget() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
         try {
-            if (startIndex < 0 || startIndex >= buffer.size() || endIndex <= startIndex) {
-                return Collections.emptyList();
+            long oldest = Math.max(head, tail.get() - items.length());
+            long end = tail.get();
+            while (retainedBytes.get() > byteBudget && oldest < end) {
+                int slot = (int) (oldest & mask);
+                long stamp = stamps.get(slot);
+                if (stamp < oldest) {
+                    break; // запись еще не опубликована
+                }
+                if (stamp == oldest) {
+                    T item = items.get(slot);
+                    if (item != null && items.compareAndSet(slot, item, null)) {
+                        retainedBytes.addAndGet(-sizeOf.applyAsInt(item));
+                    }
+                }
+                oldest++;
+                head = oldest;
             }
-            int indexTo = Math.min(startIndex + endIndex, buffer.size());
-            return new ArrayList<>(buffer).subList(startIndex, indexTo);
         } finally {
-            lock.unlock();
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Читает записи с номерами от fromSequence, не больше maxCount штук. Если записи с нужными
+     * номерами уже вытеснены, чтение продолжается с самой старой доступной записи. Чтение
+     * останавливается на первой еще не опубликованной записи.
+     *
+     * @param fromSequence номер первой записи
+     * @param maxCount     наибольшее количество записей
+     * @param consumer     получатель записей и их номеров
+     * @return номер, с которого нужно продолжить чтение
+     */
+    public long read(long fromSequence, int maxCount, ObjLongConsumer<? super T> consumer) {
+        long end = tail.get();
+        long next = Math.max(fromSequence, getFirstSequence());
+        int read = 0;
+        while (next < end && read < maxCount) {
+            int slot = (int) (next & mask);
+            if (stamps.get(slot) != next) {
+                if (tail.get() - next > items.length()) {
+                    next = getFirstSequence(); // запись перезаписана, пока ее читали
+                    continue;
+                }
+                break; // запись еще не опубликована
+            }
+            T item = items.get(slot);
+            if (item == null || tail.get() - next > items.length()) {
+                // запись вытеснена по размеру или ячейку уже мог занять писатель следующего круга
+                next = Math.max(next + 1, getFirstSequence());
+                continue;
+            }
+            consumer.accept(item, next);
+            next++;
+            read++;
+        }
+        return next;
+    }
+
+    /**
+     * Получает запись с указанным номером
+     *
+     * @param sequence номер записи
+     * @return запись или null, если она уже вытеснена или еще не опубликована
+     */
+    public T get(long sequence) {
+        if (sequence < getFirstSequence()) {
+            return null;
+        }
+        int slot = (int) (sequence & mask);
+        if (stamps.get(slot) != sequence) {
+            return null;
+        }
+        T item = items.get(slot);
+        return tail.get() - sequence > items.length() ? null : item;
+    }
+
+    /**
+     * Получает элементы из буфера, начиная с startIndex-го от самого старого
+     *
+     * @param startIndex индекс начала диапазона, 0 — самая старая запись
+     * @param count      количество элементов
+     * @return элементы из указанного диапазона
+     */
+    public Iterable<T> range(int startIndex, int count) {
+        if (startIndex < 0 || count <= 0 || startIndex >= size()) {
+            return Collections.emptyList();
         }
+        int limit = Math.min(count, size() - startIndex);
+        List<T> result = new ArrayList<>(limit);
+        read(getFirstSequence() + startIndex, limit, (item, sequence) -> result.add(item));
+        return result;
     }
 
     /**
      * Получает все элементы из буфера
      *
-     * @return итерируемый объект, содержащий все элементы буфера
+     * @return копия элементов буфера от самого старого к самому новому
      */
     public Iterable<T> all() {
-        return buffer;
+        return range(0, capacity);
     }
 
     /**
@@ -77,7 +282,43 @@ import java.util.concurrent.locks.ReentrantLock;
      * @return текущий размер буфера
      */
     public int size() {
-        return buffer.size();
+        return (int) (tail.get() - getFirstSequence());
     }
 
+    /**
+     * Возвращает номер самой старой записи, доступной для чтения
+     *
+     * @return номер записи
+     */
+    public long getFirstSequence() {
+        return Math.max(head, Math.max(0, tail.get() - capacity));
+    }
+
+    /**
+     * Возвращает оценку суммарного размера записей в буфере вместе с ячейками кольца
+     * и учтенной памятью связанных структур
+     *
+     * @return размер в байтах, 0 — если размер не ограничен
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    /**
+     * Возвращает номер, который получит следующая запись
+     *
+     * @return номер записи
+     */
+    public long getNextSequence() {
+        return tail.get();
+    }
+
+    /**
+     * Возвращает максимальное количество записей, доступных для чтения
+     *
+     * @return емкость буфера
+     */
+    public int getCapacity() {
+        return capacity;
+    }
 }
@@ -1,6 +1,16 @@
 package log;
 
+/**
+ * Слушатель изменений лога. Уведомления объединяются: одно уведомление может охватывать
+ * много новых сообщений.
+ */
 public interface LogChangeListener
 {
-    public void onLogChanged();
+    /**
+     * Вызывается, когда в лог добавлены сообщения.
+     *
+     * @param fromSequence номер первого нового сообщения
+     * @param toSequence   номер, следующий за последним новым сообщением
+     */
+    public void onLogChanged(long fromSequence, long toSequence);
 }
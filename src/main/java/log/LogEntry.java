@@ -1,24 +1,129 @@
 package log;
 
+/**
+ * Запись лога. Кроме уровня и текста хранит в примитивных полях порядковый номер,
+ * монотонное время создания и идентификатор потока, создавшего запись.
+ */
 public class LogEntry
 {
+    /**
+     * оценка размера самой записи в куче: заголовок объекта, две ссылки, три long и int
+     */
+    static final int entryBytes = 56;
+
+    /**
+     * разница между временем эпохи и монотонным временем в миллисекундах, определяется
+     * один раз, чтобы время записей не зависело от перевода системных часов
+     */
+    private static final long clockOffsetMillis = System.currentTimeMillis() - System.nanoTime() / 1_000_000;
+
     private LogLevel m_logLevel;
     private String m_strMessage;
-    
+    private final long m_sequence;
+    private final long m_timestampNanos;
+    private final long m_threadId;
+
+    /**
+     * оценка занимаемой записью памяти в байтах
+     */
+    private final int m_retainedBytes;
+
     public LogEntry(LogLevel logLevel, String strMessage)
+    {
+        this(logLevel, strMessage, -1, System.nanoTime(), Thread.currentThread().threadId(),
+                entryBytes + stringBytes(strMessage));
+    }
+
+    /**
+     * Создает запись с уже известными номером, временем и потоком.
+     *
+     * @param logLevel       уровень
+     * @param strMessage     текст
+     * @param sequence       порядковый номер в логе, -1 — запись еще не в логе
+     * @param timestampNanos монотонное время создания, {@link System#nanoTime()}
+     * @param threadId       идентификатор потока, 0 — неизвестен
+     * @param retainedBytes  оценка занимаемой памяти в байтах
+     */
+    LogEntry(LogLevel logLevel, String strMessage, long sequence, long timestampNanos, long threadId,
+             int retainedBytes)
     {
         m_strMessage = strMessage;
         m_logLevel = logLevel;
+        m_sequence = sequence;
+        m_timestampNanos = timestampNanos;
+        m_threadId = threadId;
+        m_retainedBytes = retainedBytes;
     }
-    
+
     public String getMessage()
     {
         return m_strMessage;
     }
-    
+
     public LogLevel getLevel()
     {
         return m_logLevel;
     }
-}
 
+    /**
+     * @return порядковый номер записи в логе, -1 — запись еще не в логе
+     */
+    public long getSequence()
+    {
+        return m_sequence;
+    }
+
+    /**
+     * @return монотонное время создания записи в наносекундах, {@link System#nanoTime()}
+     */
+    public long getTimestampNanos()
+    {
+        return m_timestampNanos;
+    }
+
+    /**
+     * @return время создания записи в миллисекундах от начала эпохи
+     */
+    public long getTimeMillis()
+    {
+        return toTimeMillis(m_timestampNanos);
+    }
+
+    /**
+     * @return идентификатор потока, создавшего запись, 0 — неизвестен
+     */
+    public long getThreadId()
+    {
+        return m_threadId;
+    }
+
+    int getRetainedBytes()
+    {
+        return m_retainedBytes;
+    }
+
+    /**
+     * Переводит монотонное время в миллисекунды от начала эпохи.
+     */
+    static long toTimeMillis(long timestampNanos)
+    {
+        return clockOffsetMillis + Math.floorDiv(timestampNanos, 1_000_000);
+    }
+
+    /**
+     * Переводит время в миллисекундах от начала эпохи в монотонное время.
+     */
+    static long toTimestampNanos(long timeMillis)
+    {
+        return (timeMillis - clockOffsetMillis) * 1_000_000;
+    }
+
+    /**
+     * Оценивает память, занимаемую строкой: заголовки строки и массива и по два байта на символ.
+     * Для null память не занимается.
+     */
+    static int stringBytes(String text)
+    {
+        return text == null ? 0 : 40 + 2 * text.length();
+    }
+}
@@ -0,0 +1,605 @@
+package log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.LongFunction;
+
+/**
+ * Индекс сообщений лога, который догоняет лог при запросе.
+ *
+ * <p>Добавление сообщения в лог индекс не трогает: перед каждым запросом индекс читает
+ * из буфера сообщения, добавленные после предыдущего запроса, по порядку номеров.
+ * Поэтому потоки, пишущие в лог, не берут блокировку индекса и не разбивают текст
+ * на слова, а пока фильтром никто не пользуется, индекс ничего не стоит.
+ *
+ * <p>Для каждого уровня и для каждого слова сообщений хранится упорядоченный список номеров
+ * сообщений, а для каждого номера — время добавления. Запрос перебирает номера с конца
+ * самого короткого подходящего списка и останавливается, набрав нужное количество
+ * сообщений, поэтому его стоимость не зависит от длины всей истории. Текст запроса ищется
+ * с начала слова (см. {@link LogQuery#withText}): иначе список слова «bot» не нашел бы
+ * «robot», и ответ зависел бы от того, есть ли в тексте запроса слова.
+ *
+ * <p>Номера сообщений, вытесненных из лога по количеству или по размеру, удаляются из списков
+ * постепенно: когда начало лога сдвигается больше чем на четверть проиндексированных
+ * сообщений, все списки очищаются от устаревших номеров.
+ *
+ * <p>Память индекса — кольцо времени, списки номеров и слова — входит в размер буфера лога
+ * и вместе с сообщениями ограничена его бюджетом.
+ */
+class LogIndex
+{
+    /**
+     * память ячейки кольца времени в байтах
+     */
+    static final int slotBytes = Long.BYTES;
+
+    /**
+     * оценка памяти списка номеров без его элементов: объект списка и заголовок массива
+     */
+    private static final int postingsBytes = 40;
+
+    /**
+     * оценка памяти узла дерева слов без самого слова
+     */
+    private static final int tokenEntryBytes = 40;
+
+    /**
+     * сколько сообщений индексируется между проверками памяти индекса
+     */
+    private static final int catchUpBatchSize = 256;
+
+    private static final LogLevel[] levels = LogLevel.values();
+
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * буфер лога, из которого читаются новые сообщения
+     */
+    private final ConcurrentLogBuffer<LogEntry> messages;
+
+    /**
+     * время добавления сообщения по его номеру (кольцевой буфер)
+     */
+    private final long[] times;
+    private final Postings[] byLevel = new Postings[levels.length];
+    private final TreeMap<String, Postings> byToken = new TreeMap<>();
+
+    /**
+     * слова индексируемого сообщения; список используется повторно
+     */
+    private final List<String> tokens = new ArrayList<>();
+
+    /**
+     * номер, с которого продолжается чтение новых сообщений
+     */
+    private long nextSequence;
+
+    /**
+     * начало лога во время последней очистки списков
+     */
+    private long sweptFirst;
+
+    /**
+     * оценка памяти индекса и та ее часть, которая уже учтена в размере буфера
+     */
+    private long indexBytes;
+    private long reportedBytes;
+
+    /**
+     * @param messages буфер лога; емкость индекса равна его емкости
+     */
+    LogIndex(ConcurrentLogBuffer<LogEntry> messages)
+    {
+        this.capacity = messages.getCapacity();
+        this.messages = messages;
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.times = new long[size];
+        for (int i = 0; i < byLevel.length; i++)
+        {
+            byLevel[i] = new Postings();
+        }
+        this.indexBytes = (long) size * slotBytes + levelBytes();
+        reportBytes();
+    }
+
+    /**
+     * Индексирует сообщения, опубликованные после предыдущего вызова. Вытесненные
+     * за это время сообщения пропускаются, чтение останавливается на первом еще
+     * не опубликованном. Память индекса сообщается буферу после каждой пачки, чтобы
+     * вытеснение не опережало очистку списков.
+     */
+    private void catchUp()
+    {
+        long from;
+        do
+        {
+            from = nextSequence;
+            nextSequence = messages.read(nextSequence, catchUpBatchSize, this::add);
+            sweepIfBehind();
+            reportBytes();
+        }
+        while (nextSequence - from >= catchUpBatchSize);
+        // вытеснение из-за памяти индекса могло сдвинуть начало лога
+        if (sweepIfBehind())
+        {
+            reportBytes();
+        }
+    }
+
+    /**
+     * Очищает списки, если начало лога сдвинулось с прошлой очистки больше чем на четверть
+     * проиндексированных сообщений.
+     *
+     * @return true, если списки очищены
+     */
+    private boolean sweepIfBehind()
+    {
+        long first = firstSequence();
+        if (first - sweptFirst < Math.max(1, (nextSequence - first) / 4))
+        {
+            return false;
+        }
+        sweep(first);
+        sweptFirst = first;
+        return true;
+    }
+
+    /**
+     * Сообщает буферу изменение памяти индекса; буфер при этом может вытеснить старые сообщения.
+     */
+    private void reportBytes()
+    {
+        messages.addRetainedBytes(indexBytes - reportedBytes);
+        reportedBytes = indexBytes;
+    }
+
+    /**
+     * Добавляет сообщение в индекс. Сообщения добавляются по возрастанию номеров.
+     */
+    private void add(LogEntry entry, long sequence)
+    {
+        times[(int) (sequence & mask)] = entry.getTimeMillis();
+        addPosting(byLevel[entry.getLevel().ordinal()], sequence);
+        tokens.clear();
+        tokenize(entry.getMessage(), tokens);
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            String token = tokens.get(i);
+            Postings postings = byToken.get(token);
+            if (postings == null)
+            {
+                postings = new Postings();
+                byToken.put(token, postings);
+                indexBytes += tokenBytes(token, postings);
+            }
+            // повтор слова в том же сообщении уже записан последним номером списка
+            addPosting(postings, sequence);
+        }
+    }
+
+    private void addPosting(Postings postings, long sequence)
+    {
+        int length = postings.length();
+        postings.add(sequence);
+        indexBytes += (long) (postings.length() - length) * Long.BYTES;
+    }
+
+    /**
+     * Возвращает самые новые сообщения, подходящие под запрос, в порядке добавления.
+     *
+     * @param query  запрос
+     * @param limit  наибольшее количество сообщений
+     * @param lookup получение сообщения по номеру; null — сообщение уже вытеснено
+     * @return подходящие сообщения, не больше limit
+     */
+    synchronized List<LogEntry> query(LogQuery query, int limit, LongFunction<LogEntry> lookup)
+    {
+        catchUp();
+        long first = firstSequence();
+        long lo = Math.max(query.getFromSequence(), first);
+        long hi = Math.min(query.getToSequence(), nextSequence);
+        if (query.getFromTimeMillis() != Long.MIN_VALUE)
+        {
+            lo = Math.max(lo, firstAtOrAfter(query.getFromTimeMillis(), first, nextSequence));
+        }
+        if (query.getToTimeMillis() != Long.MAX_VALUE)
+        {
+            hi = Math.min(hi, firstAtOrAfter(query.getToTimeMillis(), first, nextSequence));
+        }
+        if (lo >= hi || limit <= 0)
+        {
+            return Collections.emptyList();
+        }
+        Cursor cursor = candidates(query, lo, hi);
+        LogLevel minLevel = query.getMinLevel();
+        String text = query.getText();
+        List<LogEntry> result = new ArrayList<>();
+        for (long sequence = cursor.previous(); sequence >= 0 && result.size() < limit; sequence = cursor.previous())
+        {
+            LogEntry entry = lookup.apply(sequence);
+            if (entry == null)
+            {
+                if (sequence < messages.getFirstSequence())
+                {
+                    break; // более старые сообщения тоже вытеснены
+                }
+                continue; // сообщение еще не опубликовано
+            }
+            if ((minLevel == null || entry.getLevel().level() >= minLevel.level())
+                    && (text.isEmpty() || containsFromWordStart(entry.getMessage(), text)))
+            {
+                result.add(entry);
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Выбирает самый короткий источник номеров-кандидатов: слова текста, уровни или весь диапазон.
+     */
+    private Cursor candidates(LogQuery query, long lo, long hi)
+    {
+        Cursor best = null;
+        long bestCount = hi - lo;
+        List<String> tokens = tokenize(query.getText());
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            String token = tokens.get(i);
+            boolean prefix = i == tokens.size() - 1 && !endsWithSeparator(query.getText());
+            Cursor cursor;
+            long count;
+            if (prefix)
+            {
+                SortedMap<String, Postings> matches = byToken.subMap(token, token + Character.MAX_VALUE);
+                List<Cursor> cursors = new ArrayList<>(matches.size());
+                count = 0;
+                for (Postings postings : matches.values())
+                {
+                    cursors.add(postings.cursor(lo, hi));
+                    count += postings.count(lo, hi);
+                }
+                cursor = cursors.size() == 1 ? cursors.get(0) : new MergeCursor(cursors);
+            }
+            else
+            {
+                Postings postings = byToken.get(token);
+                if (postings == null)
+                {
+                    return () -> -1;
+                }
+                cursor = postings.cursor(lo, hi);
+                count = postings.count(lo, hi);
+            }
+            if (best == null || count < bestCount)
+            {
+                best = cursor;
+                bestCount = count;
+            }
+        }
+        if (query.getMinLevel() != null && query.getMinLevel().ordinal() > 0)
+        {
+            List<Cursor> cursors = new ArrayList<>();
+            long count = 0;
+            for (int level = query.getMinLevel().ordinal(); level < levels.length; level++)
+            {
+                cursors.add(byLevel[level].cursor(lo, hi));
+                count += byLevel[level].count(lo, hi);
+            }
+            if (best == null || count < bestCount)
+            {
+                best = new MergeCursor(cursors);
+                bestCount = count;
+            }
+        }
+        if (best == null)
+        {
+            long[] next = {hi};
+            best = () -> next[0] > lo ? --next[0] : -1;
+        }
+        return best;
+    }
+
+    /**
+     * Находит первый номер из [from, to), добавленный не раньше указанного времени.
+     * Время добавления считается неубывающим по номерам.
+     */
+    private long firstAtOrAfter(long timeMillis, long from, long to)
+    {
+        while (from < to)
+        {
+            long middle = (from + to) >>> 1;
+            if (times[(int) (middle & mask)] < timeMillis)
+            {
+                from = middle + 1;
+            }
+            else
+            {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    private long firstSequence()
+    {
+        return Math.max(messages.getFirstSequence(), nextSequence - capacity);
+    }
+
+    /**
+     * Удаляет из всех списков номера вытесненных сообщений и пустые списки слов
+     * и заново оценивает память индекса.
+     *
+     * @param first номер самого старого сообщения в логе
+     */
+    private void sweep(long first)
+    {
+        for (Postings postings : byLevel)
+        {
+            postings.dropBefore(first);
+        }
+        long bytes = (long) times.length * slotBytes + levelBytes();
+        for (var iterator = byToken.entrySet().iterator(); iterator.hasNext(); )
+        {
+            Map.Entry<String, Postings> entry = iterator.next();
+            if (entry.getValue().dropBefore(first))
+            {
+                iterator.remove();
+            }
+            else
+            {
+                bytes += tokenBytes(entry.getKey(), entry.getValue());
+            }
+        }
+        indexBytes = bytes;
+    }
+
+    private long levelBytes()
+    {
+        long bytes = 0;
+        for (Postings postings : byLevel)
+        {
+            bytes += postingsBytes + (long) postings.length() * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    private static long tokenBytes(String token, Postings postings)
+    {
+        return tokenEntryBytes + LogEntry.stringBytes(token) + postingsBytes + (long) postings.length() * Long.BYTES;
+    }
+
+    /**
+     * Разбивает текст на слова из букв и цифр в нижнем регистре.
+     *
+     * @param text текст
+     * @return слова в порядке появления
+     */
+    static List<String> tokenize(String text)
+    {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, tokens);
+        return tokens;
+    }
+
+    private static void tokenize(String text, List<String> tokens)
+    {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++)
+        {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0)
+            {
+                start = i;
+            }
+            else if (!wordChar && start >= 0)
+            {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+
+    private static boolean endsWithSeparator(String text)
+    {
+        return !text.isEmpty() && !Character.isLetterOrDigit(text.charAt(text.length() - 1));
+    }
+
+    /**
+     * Проверяет без выделения памяти, содержит ли строка образец в нижнем регистре так, что
+     * образец, начинающийся с буквы или цифры, начинается в строке с начала слова. Значит,
+     * все слова образца, кроме последнего, совпадают со словами строки целиком, а последнее
+     * может быть началом слова, — ровно то, что отбирают списки номеров в {@link #candidates}.
+     */
+    private static boolean containsFromWordStart(String message, String lowerCasePattern)
+    {
+        boolean fromWordStart = !lowerCasePattern.isEmpty() && Character.isLetterOrDigit(lowerCasePattern.charAt(0));
+        int last = message.length() - lowerCasePattern.length();
+        for (int start = 0; start <= last; start++)
+        {
+            if (fromWordStart && start > 0 && Character.isLetterOrDigit(message.charAt(start - 1)))
+            {
+                continue;
+            }
+            if (message.regionMatches(true, start, lowerCasePattern, 0, lowerCasePattern.length()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Перебор номеров по убыванию.
+     */
+    private interface Cursor
+    {
+        /**
+         * @return следующий меньший номер или -1, если номеров больше нет
+         */
+        long previous();
+    }
+
+    /**
+     * Упорядоченный по возрастанию список номеров.
+     */
+    private static final class Postings
+    {
+        private long[] values = new long[4];
+        private int head;
+        private int size;
+
+        /**
+         * Добавляет номер в конец списка; номер, равный последнему, не добавляется.
+         */
+        void add(long sequence)
+        {
+            if (size > head && values[size - 1] == sequence)
+            {
+                return;
+            }
+            if (size == values.length)
+            {
+                grow();
+            }
+            values[size++] = sequence;
+        }
+
+        /**
+         * Освобождает место в начале массива или увеличивает его вдвое.
+         */
+        private void grow()
+        {
+            int count = size - head;
+            long[] target = count * 2 <= values.length ? values : new long[values.length * 2];
+            System.arraycopy(values, head, target, 0, count);
+            values = target;
+            head = 0;
+            size = count;
+        }
+
+        /**
+         * Удаляет номера меньше указанного и уменьшает массив, если он заполнен меньше
+         * чем на четверть.
+         *
+         * @return true, если список опустел
+         */
+        boolean dropBefore(long sequence)
+        {
+            head = lowerBound(sequence);
+            int count = size - head;
+            int length = values.length;
+            while (length > 4 && count * 4 <= length)
+            {
+                length /= 2;
+            }
+            if (length < values.length)
+            {
+                long[] target = new long[length];
+                System.arraycopy(values, head, target, 0, count);
+                values = target;
+                head = 0;
+                size = count;
+            }
+            if (head == size)
+            {
+                head = 0;
+                size = 0;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return длина массива номеров
+         */
+        int length()
+        {
+            return values.length;
+        }
+
+        int lowerBound(long sequence)
+        {
+            int from = head;
+            int to = size;
+            while (from < to)
+            {
+                int middle = (from + to) >>> 1;
+                if (values[middle] < sequence)
+                {
+                    from = middle + 1;
+                }
+                else
+                {
+                    to = middle;
+                }
+            }
+            return from;
+        }
+
+        long count(long lo, long hi)
+        {
+            return lowerBound(hi) - lowerBound(lo);
+        }
+
+        Cursor cursor(long lo, long hi)
+        {
+            int start = lowerBound(lo);
+            int[] position = {lowerBound(hi)};
+            return () -> position[0] > start ? values[--position[0]] : -1;
+        }
+    }
+
+    /**
+     * Перебор по убыванию объединения нескольких перечислений без повторов.
+     */
+    private static final class MergeCursor implements Cursor
+    {
+        private final PriorityQueue<long[]> heads = new PriorityQueue<>((a, b) -> Long.compare(b[0], a[0]));
+        private final List<Cursor> cursors;
+        private long last = -1;
+
+        MergeCursor(List<Cursor> cursors)
+        {
+            this.cursors = cursors;
+            for (int i = 0; i < cursors.size(); i++)
+            {
+                long sequence = cursors.get(i).previous();
+                if (sequence >= 0)
+                {
+                    heads.add(new long[]{sequence, i});
+                }
+            }
+        }
+
+        @Override
+        public long previous()
+        {
+            while (!heads.isEmpty())
+            {
+                long[] head = heads.poll();
+                long sequence = head[0];
+                long next = cursors.get((int) head[1]).previous();
+                if (next >= 0)
+                {
+                    head[0] = next;
+                    heads.add(head);
+                }
+                if (sequence != last)
+                {
+                    last = sequence;
+                    return sequence;
+                }
+            }
+            return -1;
+        }
+    }
+}
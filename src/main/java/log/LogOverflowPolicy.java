@@ -0,0 +1,41 @@
+package log;
+
+/**
+ * Что делает асинхронный логгер с сообщением, если очередь к потоку записи заполнена.
+ */
+public enum LogOverflowPolicy
+{
+    /**
+     * ждать, пока поток записи освободит место
+     */
+    Block,
+
+    /**
+     * отбросить сообщение
+     */
+    Drop,
+
+    /**
+     * при заполнении очереди больше чем наполовину принимать только каждое n-е сообщение,
+     * при полной очереди — отбрасывать
+     */
+    Sample;
+
+    /**
+     * Разбирает политику из строки без учета регистра: "block", "drop" или "sample".
+     *
+     * @param value строковое значение
+     * @return политика
+     */
+    public static LogOverflowPolicy parse(String value)
+    {
+        for (LogOverflowPolicy policy : values())
+        {
+            if (policy.name().equalsIgnoreCase(value.trim()))
+            {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown log overflow policy: " + value);
+    }
+}
@@ -0,0 +1,127 @@
+package log;
+
+import java.util.Locale;
+
+/**
+ * Условия отбора сообщений лога: наименьший уровень, текст, диапазон номеров и диапазон времени.
+ * Объект неизменяемый; методы with возвращают копию с измененным условием.
+ */
+public final class LogQuery
+{
+    /**
+     * запрос без условий: подходят все сообщения
+     */
+    public static final LogQuery all = new LogQuery(null, "", 0, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    private final LogLevel minLevel;
+    private final String text;
+    private final long fromSequence;
+    private final long toSequence;
+    private final long fromTimeMillis;
+    private final long toTimeMillis;
+
+    private LogQuery(LogLevel minLevel, String text, long fromSequence, long toSequence,
+                     long fromTimeMillis, long toTimeMillis)
+    {
+        this.minLevel = minLevel;
+        this.text = text;
+        this.fromSequence = fromSequence;
+        this.toSequence = toSequence;
+        this.fromTimeMillis = fromTimeMillis;
+        this.toTimeMillis = toTimeMillis;
+    }
+
+    /**
+     * Отбирает сообщения с уровнем не ниже указанного.
+     *
+     * @param level наименьший уровень, null — любой
+     * @return новый запрос
+     */
+    public LogQuery withMinLevel(LogLevel level)
+    {
+        return new LogQuery(level, text, fromSequence, toSequence, fromTimeMillis, toTimeMillis);
+    }
+
+    /**
+     * Отбирает сообщения, содержащие указанный текст без учета регистра, начиная с начала
+     * слова: слова текста, кроме последнего, должны совпасть со словами сообщения целиком,
+     * а последнее может быть началом слова. Так, «robot mov» находит «Robot moved», а «bot»
+     * не находит «robot». Текст, начинающийся не с буквы или цифры, ищется в любом месте.
+     *
+     * @param text искомый текст, пустая строка — любой
+     * @return новый запрос
+     */
+    public LogQuery withText(String text)
+    {
+        return new LogQuery(minLevel, text.trim().toLowerCase(Locale.ROOT), fromSequence, toSequence,
+                fromTimeMillis, toTimeMillis);
+    }
+
+    /**
+     * Отбирает сообщения с номерами из диапазона.
+     *
+     * @param fromSequence первый номер (включительно)
+     * @param toSequence   последний номер (исключительно)
+     * @return новый запрос
+     */
+    public LogQuery withSequenceRange(long fromSequence, long toSequence)
+    {
+        return new LogQuery(minLevel, text, fromSequence, toSequence, fromTimeMillis, toTimeMillis);
+    }
+
+    /**
+     * Отбирает сообщения, добавленные в указанный промежуток времени.
+     *
+     * @param fromTimeMillis начало промежутка в миллисекундах от начала эпохи (включительно)
+     * @param toTimeMillis   конец промежутка (исключительно)
+     * @return новый запрос
+     */
+    public LogQuery withTimeRange(long fromTimeMillis, long toTimeMillis)
+    {
+        return new LogQuery(minLevel, text, fromSequence, toSequence, fromTimeMillis, toTimeMillis);
+    }
+
+    public LogLevel getMinLevel()
+    {
+        return minLevel;
+    }
+
+    /**
+     * @return искомый текст в нижнем регистре, пустая строка — любой
+     */
+    public String getText()
+    {
+        return text;
+    }
+
+    public long getFromSequence()
+    {
+        return fromSequence;
+    }
+
+    public long getToSequence()
+    {
+        return toSequence;
+    }
+
+    public long getFromTimeMillis()
+    {
+        return fromTimeMillis;
+    }
+
+    public long getToTimeMillis()
+    {
+        return toTimeMillis;
+    }
+
+    /**
+     * Проверяет, что запрос отбирает все сообщения.
+     *
+     * @return true, если условий нет
+     */
+    public boolean isUnrestricted()
+    {
+        return minLevel == null && text.isEmpty() && fromSequence <= 0 && toSequence == Long.MAX_VALUE
+                && fromTimeMillis == Long.MIN_VALUE && toTimeMillis == Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,393 @@
+package log;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Хранилище лога на диске: последовательность файлов-сегментов, отображенных в память,
+ * в которые записи только дописываются.
+ *
+ * <p>Сегмент называется по номеру своей первой записи и начинается с заголовка
+ * (сигнатура и версия формата). Запись в сегменте: длина данных (int), контрольная сумма
+ * CRC32C данных (int) и сами данные — номер записи (long), время в миллисекундах (long),
+ * уровень (byte) и текст в UTF-8. Нулевая длина означает конец записей. Данные записываются
+ * раньше длины, поэтому недописанная запись не видна, а поврежденную выдает контрольная сумма.
+ *
+ * <p>Новый сегмент начинается, когда в текущем не хватает места или он старше заданного
+ * возраста; самые старые сегменты сверх заданного количества удаляются. При открытии
+ * последний сегмент проверяется: все после последней целой записи обнуляется, и запись
+ * продолжается с этого места.
+ *
+ * <p>Чтение идет прямо из отображенных в память сегментов, без копирования файла в буферы.
+ */
+public class LogSegmentStore
+{
+    /**
+     * размер сегмента, возраст сегмента и количество сегментов по умолчанию
+     */
+    public static final int defaultSegmentSize = 4 << 20;
+    public static final long defaultMaxSegmentAgeMillis = 60 * 60 * 1000L;
+    public static final int defaultMaxSegments = 16;
+
+    private static final int magic = 0x524C4F47; // "RLOG"
+    private static final int formatVersion = 1;
+    private static final int segmentHeaderSize = 8;
+    private static final int recordHeaderSize = 8;
+
+    /**
+     * номер записи, время и уровень перед текстом
+     */
+    private static final int recordFixedSize = 8 + 8 + 1;
+    private static final int minSegmentSize = 4096;
+    private static final String segmentSuffix = ".seg";
+    private static final LogLevel[] levels = LogLevel.values();
+
+    /**
+     * Получатель записей, прочитанных из хранилища.
+     */
+    public interface RecordConsumer
+    {
+        /**
+         * @param sequence   номер записи
+         * @param timeMillis время записи в миллисекундах от начала эпохи
+         * @param level      уровень
+         * @param message    текст
+         */
+        void accept(long sequence, long timeMillis, LogLevel level, String message);
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSegmentAgeMillis;
+    private final int maxSegments;
+
+    /**
+     * сегменты по номеру первой записи, включая текущий
+     */
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private final CRC32C crc = new CRC32C();
+
+    private FileChannel activeChannel;
+    private MappedByteBuffer active;
+    private long activeOpenedMillis;
+    private long nextSequence;
+
+    /**
+     * Открывает хранилище в указанном каталоге, восстанавливая хвост последнего сегмента.
+     *
+     * @param directory           каталог сегментов; создается, если его нет
+     * @param segmentSize         размер файла сегмента в байтах
+     * @param maxSegmentAgeMillis возраст, после которого начинается новый сегмент
+     * @param maxSegments         сколько сегментов хранится; самые старые удаляются
+     * @throws IOException если каталог или сегмент не удалось открыть
+     */
+    public LogSegmentStore(Path directory, int segmentSize, long maxSegmentAgeMillis, int maxSegments)
+            throws IOException
+    {
+        if (segmentSize < minSegmentSize || maxSegmentAgeMillis <= 0 || maxSegments < 1)
+        {
+            throw new IllegalArgumentException("Invalid log segment settings");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegmentAgeMillis = maxSegmentAgeMillis;
+        this.maxSegments = maxSegments;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + segmentSuffix))
+        {
+            for (Path file : files)
+            {
+                String name = file.getFileName().toString();
+                try
+                {
+                    segments.put(Long.parseLong(name.substring(0, name.length() - segmentSuffix.length())), file);
+                }
+                catch (NumberFormatException e)
+                {
+                    // чужой файл в каталоге сегментов
+                }
+            }
+        }
+        if (segments.isEmpty())
+        {
+            openSegment(0);
+        }
+        else
+        {
+            recoverSegment(segments.lastEntry());
+        }
+    }
+
+    /**
+     * Открывает хранилище с настройками по умолчанию.
+     *
+     * @param directory каталог сегментов
+     * @throws IOException если каталог или сегмент не удалось открыть
+     */
+    public LogSegmentStore(Path directory) throws IOException
+    {
+        this(directory, defaultSegmentSize, defaultMaxSegmentAgeMillis, defaultMaxSegments);
+    }
+
+    /**
+     * Дописывает запись в текущий сегмент, при необходимости начиная новый.
+     *
+     * @param level   уровень
+     * @param message текст
+     * @return номер записи в хранилище
+     * @throws UncheckedIOException если не удалось начать новый сегмент
+     */
+    public long append(LogLevel level, String message)
+    {
+        return append(level, message, System.currentTimeMillis());
+    }
+
+    /**
+     * Дописывает запись, созданную раньше, в текущий сегмент, при необходимости начиная новый.
+     *
+     * @param level      уровень
+     * @param message    текст
+     * @param timeMillis время создания записи по часам эпохи
+     * @return номер записи в хранилище
+     * @throws UncheckedIOException если не удалось начать новый сегмент
+     */
+    public synchronized long append(LogLevel level, String message, long timeMillis)
+    {
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        int maxText = segmentSize - segmentHeaderSize - recordHeaderSize - recordFixedSize - 4;
+        int textLength = Math.min(text.length, maxText);
+        int length = recordFixedSize + textLength;
+        long now = System.currentTimeMillis();
+        try
+        {
+            // после записи должно остаться место для нулевой длины, отмечающей конец
+            if (active.remaining() < recordHeaderSize + length + 4
+                    || now - activeOpenedMillis > maxSegmentAgeMillis)
+            {
+                rotate();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        long sequence = nextSequence++;
+        int position = active.position();
+        int dataStart = position + recordHeaderSize;
+        active.putLong(dataStart, sequence);
+        active.putLong(dataStart + 8, timeMillis);
+        active.put(dataStart + 16, (byte) level.ordinal());
+        active.put(dataStart + recordFixedSize, text, 0, textLength);
+        crc.reset();
+        crc.update(active.slice(dataStart, length));
+        active.putInt(position + 4, (int) crc.getValue());
+        active.putInt(position, length);
+        active.position(dataStart + length);
+        return sequence;
+    }
+
+    /**
+     * Читает записи с номерами от fromSequence по порядку, не больше maxCount штук.
+     * Записи, сегменты которых уже удалены, пропускаются.
+     *
+     * @param fromSequence номер первой записи
+     * @param maxCount     наибольшее количество записей
+     * @param consumer     получатель записей
+     * @return номер, с которого нужно продолжить чтение
+     * @throws UncheckedIOException если сегмент не удалось прочитать
+     */
+    public synchronized long read(long fromSequence, int maxCount, RecordConsumer consumer)
+    {
+        Long first = segments.floorKey(fromSequence);
+        if (first == null)
+        {
+            first = segments.firstKey();
+        }
+        long next = Math.max(fromSequence, first);
+        int read = 0;
+        for (Map.Entry<Long, Path> segment : segments.tailMap(first, true).entrySet())
+        {
+            if (read >= maxCount)
+            {
+                break;
+            }
+            ByteBuffer buffer;
+            try
+            {
+                buffer = segment.getKey() == lastSegmentFirst() ? active.duplicate() : mapReadOnly(segment.getValue());
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            int position = segmentHeaderSize;
+            while (read < maxCount)
+            {
+                int length = validRecordLength(buffer, position);
+                if (length < 0)
+                {
+                    break;
+                }
+                int dataStart = position + recordHeaderSize;
+                long sequence = buffer.getLong(dataStart);
+                if (sequence >= next)
+                {
+                    int levelIndex = buffer.get(dataStart + 16);
+                    LogLevel level = levelIndex >= 0 && levelIndex < levels.length ? levels[levelIndex] : LogLevel.Info;
+                    String message = StandardCharsets.UTF_8.decode(
+                            buffer.slice(dataStart + recordFixedSize, length - recordFixedSize)).toString();
+                    consumer.accept(sequence, buffer.getLong(dataStart + 8), level, message);
+                    next = sequence + 1;
+                    read++;
+                }
+                position = dataStart + length;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Возвращает номер, который получит следующая запись.
+     *
+     * @return номер записи
+     */
+    public synchronized long getNextSequence()
+    {
+        return nextSequence;
+    }
+
+    /**
+     * Сбрасывает текущий сегмент на диск и закрывает его.
+     *
+     * @throws IOException если сегмент не удалось закрыть
+     */
+    public synchronized void close() throws IOException
+    {
+        active.force();
+        activeChannel.close();
+    }
+
+    private long lastSegmentFirst()
+    {
+        return segments.lastKey();
+    }
+
+    /**
+     * Возвращает длину данных целой записи в указанном месте или -1, если там конец записей
+     * или поврежденная запись.
+     */
+    private int validRecordLength(ByteBuffer buffer, int position)
+    {
+        if (position + recordHeaderSize > buffer.limit())
+        {
+            return -1;
+        }
+        int length = buffer.getInt(position);
+        int dataStart = position + recordHeaderSize;
+        if (length < recordFixedSize || length > buffer.limit() - dataStart)
+        {
+            return -1;
+        }
+        crc.reset();
+        crc.update(buffer.slice(dataStart, length));
+        return (int) crc.getValue() == buffer.getInt(position + 4) ? length : -1;
+    }
+
+    /**
+     * Завершает текущий сегмент и начинает новый, удаляя самые старые сегменты сверх лимита.
+     */
+    private void rotate() throws IOException
+    {
+        active.force();
+        activeChannel.close();
+        openSegment(nextSequence);
+        while (segments.size() > maxSegments)
+        {
+            Files.deleteIfExists(segments.pollFirstEntry().getValue());
+        }
+    }
+
+    /**
+     * Создает новый сегмент, первая запись которого получит указанный номер.
+     */
+    private void openSegment(long firstSequence) throws IOException
+    {
+        Path file = directory.resolve(String.format("%020d%s", firstSequence, segmentSuffix));
+        activeChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        active = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        active.putInt(0, magic);
+        active.putInt(4, formatVersion);
+        active.position(segmentHeaderSize);
+        activeOpenedMillis = System.currentTimeMillis();
+        nextSequence = firstSequence;
+        segments.put(firstSequence, file);
+    }
+
+    /**
+     * Продолжает запись в последний сегмент после последней целой записи. Нераспознанный
+     * сегмент перезаписывается, а сегмент другого размера остается как есть и за ним
+     * начинается новый.
+     */
+    private void recoverSegment(Map.Entry<Long, Path> segment) throws IOException
+    {
+        long firstSequence = segment.getKey();
+        FileChannel channel = FileChannel.open(segment.getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < segmentHeaderSize + recordHeaderSize || size > Integer.MAX_VALUE)
+        {
+            channel.close();
+            openSegment(firstSequence);
+            return;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (buffer.getInt(0) != magic || buffer.getInt(4) != formatVersion)
+        {
+            channel.close();
+            openSegment(firstSequence);
+            return;
+        }
+        long next = firstSequence;
+        int position = segmentHeaderSize;
+        int length;
+        while ((length = validRecordLength(buffer, position)) >= 0)
+        {
+            next = buffer.getLong(position + recordHeaderSize) + 1;
+            position += recordHeaderSize + length;
+        }
+        if (size != segmentSize)
+        {
+            channel.close();
+            openSegment(next);
+            return;
+        }
+        for (int i = position; i < segmentSize; i++)
+        {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.position(position);
+        activeChannel = channel;
+        active = buffer;
+        activeOpenedMillis = System.currentTimeMillis();
+        nextSequence = next;
+    }
+
+    private static ByteBuffer mapReadOnly(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
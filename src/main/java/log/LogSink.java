@@ -0,0 +1,17 @@
+package log;
+
+/**
+ * Получатель сообщений, которые {@link AsyncLogDispatcher} забирает из очереди.
+ */
+interface LogSink
+{
+    /**
+     * Принимает сообщение, созданное раньше и, возможно, в другом потоке.
+     *
+     * @param logLevel       уровень логирования
+     * @param strMessage     текст сообщения
+     * @param timestampNanos монотонное время создания сообщения
+     * @param threadId       идентификатор потока, создавшего сообщение
+     */
+    void append(LogLevel logLevel, String strMessage, long timestampNanos, long threadId);
+}
@@ -1,29 +1,118 @@
 package log;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjLongConsumer;
 
 /**
  * Хранит и управляет логом сообщений. Позволяет регистрировать слушателей,
  * добавлять сообщения в лог и получать доступ к содержимому лога.
+ *
+ * <p>Уведомления слушателям объединяются: у каждого слушателя есть не больше одного
+ * ожидающего уведомления, которое отправляется через интервал сброса после первого нового
+ * сообщения и охватывает все сообщения, добавленные за это время. Поэтому поток слушателя
+ * получает не больше одного уведомления за интервал, сколько бы сообщений ни добавили.
  */
 public class LogWindowSource
 {
+    /**
+     * интервал сброса уведомлений по умолчанию в миллисекундах
+     */
+    public static final long defaultFlushIntervalMillis = 50;
+
+    /**
+     * размер очереди сообщений к потоку записи на диск
+     */
+    private static final int storeQueueSize = 1024;
+
+    /**
+     * ячейки кольца буфера и индекса времени занимают не больше такой доли бюджета памяти
+     */
+    private static final int slotBudgetShare = 8;
+
     private int queueLength;
+    private final long flushIntervalMillis;
     
-    private ConcurrentLogBuffer m_messages;
-    private final ArrayList<LogChangeListener> listeners;
-    private volatile LogChangeListener[] m_activeListeners;
+    private ConcurrentLogBuffer<LogEntry> m_messages;
+    private final LogIndex m_index;
+    private final MessageInterner m_interner = new MessageInterner();
+    private final ArrayList<Subscription> listeners;
+    private volatile Subscription[] m_activeListeners;
 
+    /**
+     * хранилище на диске, в которое дописываются сообщения, null — лог только в памяти
+     */
+    private volatile LogSegmentStore m_store;
 
     /**
-     * Создает новый экземпляр LogWindowSource с указанной максимальной длиной очереди.
+     * очередь к потоку, который пишет сообщения в хранилище, null — хранилища нет
+     */
+    private volatile AsyncLogDispatcher m_storeWriter;
+
+
+    /**
+     * Создает новый экземпляр LogWindowSource с указанной максимальной длиной очереди
+     * и интервалом сброса уведомлений из системного свойства {@code log.flushMillis}
+     * (по умолчанию {@value #defaultFlushIntervalMillis} мс).
      *
      * @param queueLength максимальная длина очереди сообщений в логе
      */
     public LogWindowSource(int queueLength)
     {
+        this(queueLength, Long.getLong("log.flushMillis", defaultFlushIntervalMillis));
+    }
+
+    /**
+     * Создает новый экземпляр LogWindowSource с указанной максимальной длиной очереди
+     * и интервалом сброса уведомлений.
+     *
+     * @param queueLength         максимальная длина очереди сообщений в логе
+     * @param flushIntervalMillis интервал сброса уведомлений в миллисекундах;
+     *                            0 — уведомлять сразу в потоке, добавившем сообщение
+     */
+    public LogWindowSource(int queueLength, long flushIntervalMillis)
+    {
+        this(queueLength, flushIntervalMillis, Long.MAX_VALUE);
+    }
+
+    /**
+     * Создает новый экземпляр LogWindowSource, хранящий сообщения в пределах бюджета памяти:
+     * самые старые сообщения вытесняются, когда оценка занимаемой ими памяти превышает бюджет
+     * или их становится больше queueLength.
+     *
+     * <p>В бюджет входят и ячейки кольца буфера, и индекс. Чтобы ячейки занимали не больше
+     * восьмой части бюджета, емкость лога при небольшом бюджете уменьшается до степени двойки.
+     *
+     * @param queueLength         максимальная длина очереди сообщений в логе
+     * @param flushIntervalMillis интервал сброса уведомлений в миллисекундах;
+     *                            0 — уведомлять сразу в потоке, добавившем сообщение
+     * @param byteBudget          бюджет памяти сообщений в байтах,
+     *                            {@link Long#MAX_VALUE} — только ограничение по количеству
+     */
+    public LogWindowSource(int queueLength, long flushIntervalMillis, long byteBudget)
+    {
+        if (flushIntervalMillis < 0)
+        {
+            throw new IllegalArgumentException("Flush interval must not be negative: " + flushIntervalMillis);
+        }
+        if (byteBudget != Long.MAX_VALUE)
+        {
+            long slots = byteBudget / slotBudgetShare / (ConcurrentLogBuffer.slotBytes + LogIndex.slotBytes);
+            if (slots < queueLength)
+            {
+                queueLength = (int) Math.max(1, Long.highestOneBit(slots));
+            }
+        }
         this.queueLength = queueLength;
-        this.m_messages = new ConcurrentLogBuffer(queueLength);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.m_messages = new ConcurrentLogBuffer<>(queueLength, byteBudget,
+                byteBudget == Long.MAX_VALUE ? null : LogEntry::getRetainedBytes);
+        this.m_index = new LogIndex(m_messages);
         this.listeners = new ArrayList<>();
     }
 
@@ -37,7 +126,7 @@ public class LogWindowSource
     {
         synchronized(listeners)
         {
-            listeners.add(listener);
+            listeners.add(new Subscription(listener));
             m_activeListeners = null;
         }
     }
@@ -51,7 +140,14 @@ public class LogWindowSource
     {
         synchronized(listeners)
         {
-            listeners.remove(listener);
+            for (int i = 0; i < listeners.size(); i++)
+            {
+                if (listeners.get(i).listener == listener)
+                {
+                    listeners.remove(i).active = false;
+                    break;
+                }
+            }
             m_activeListeners = null;
         }
     }
@@ -60,28 +156,182 @@ public class LogWindowSource
      * Добавляет новую запись в лог с указанным уровнем и сообщением.
      *
      * @param logLevel   уровень логирования
-     * @param strMessage текст сообщения
+     * @param strMessage текст сообщения; null записывается как "null"
      */
     public void append(LogLevel logLevel, String strMessage)
     {
-        LogEntry entry = new LogEntry(logLevel, strMessage);
-        m_messages.add(entry);
-        LogChangeListener [] activeListeners = m_activeListeners;
+        append(logLevel, strMessage, System.nanoTime(), Thread.currentThread().threadId());
+    }
+
+    /**
+     * Добавляет новую запись, созданную раньше и, возможно, в другом потоке.
+     *
+     * @param logLevel       уровень логирования
+     * @param strMessage     текст сообщения; null записывается как "null"
+     * @param timestampNanos монотонное время создания сообщения
+     * @param threadId       идентификатор потока, создавшего сообщение
+     */
+    void append(LogLevel logLevel, String strMessage, long timestampNanos, long threadId)
+    {
+        // таблица сообщений, индекс и хранилище рассчитаны на текст, поэтому null заменяется здесь
+        String message = strMessage != null ? strMessage : "null";
+        long sequence = store(logLevel, message, timestampNanos, threadId);
+        AsyncLogDispatcher storeWriter = m_storeWriter;
+        if (storeWriter != null && m_store != null)
+        {
+            storeWriter.offer(logLevel, message, timestampNanos, threadId);
+        }
+        Subscription [] activeListeners = m_activeListeners;
         if (activeListeners == null)
         {
             synchronized (listeners)
             {
-                if (m_activeListeners == null)
+                activeListeners = m_activeListeners;
+                if (activeListeners == null)
                 {
-                    activeListeners = listeners.toArray(new LogChangeListener [0]);
+                    activeListeners = listeners.toArray(new Subscription [0]);
                     m_activeListeners = activeListeners;
                 }
             }
         }
-        for (LogChangeListener listener : activeListeners)
+        for (Subscription subscription : activeListeners)
+        {
+            subscription.notifyAppended(sequence);
+        }
+    }
+
+    /**
+     * Подключает хранилище на диске: загружает из него последние сообщения прошлых запусков,
+     * не больше емкости лога, и дальше дописывает в него каждое новое сообщение.
+     * Вызывается до появления новых сообщений.
+     *
+     * <p>В хранилище пишет отдельный поток, поэтому добавление сообщения не ждет диска;
+     * если очередь к нему заполнена, добавляющий поток ждет места. Чтобы сообщения из
+     * очереди не потерялись при выходе, лог закрывают методом {@link #close()}.
+     *
+     * @param store хранилище сообщений
+     */
+    public void attachStore(LogSegmentStore store)
+    {
+        long from = Math.max(0, store.getNextSequence() - queueLength);
+        store.read(from, queueLength, (storeSequence, timeMillis, level, message) ->
+                store(level, message, LogEntry.toTimestampNanos(timeMillis), 0));
+        m_store = store;
+        m_storeWriter = new AsyncLogDispatcher(this::persist, storeQueueSize, LogOverflowPolicy.Block, "log store writer");
+    }
+
+    /**
+     * Дописывает сообщение в хранилище; вызывается в потоке записи на диск.
+     */
+    private void persist(LogLevel logLevel, String strMessage, long timestampNanos, long threadId)
+    {
+        LogSegmentStore store = m_store;
+        if (store == null)
+        {
+            return;
+        }
+        try
+        {
+            store.append(logLevel, strMessage, LogEntry.toTimeMillis(timestampNanos));
+        }
+        catch (RuntimeException | InternalError e)
+        {
+            disableStore(store, e);
+        }
+    }
+
+    /**
+     * Отключает хранилище после сбоя: сообщает о нем один раз, и дальше лог работает только
+     * в памяти. Сбоем считается не только ошибка ввода-вывода, но и любое исключение отображенного
+     * в память сегмента, например {@link InternalError} при усеченном файле или
+     * {@link java.nio.BufferOverflowException}.
+     */
+    private void disableStore(LogSegmentStore store, Throwable e)
+    {
+        if (m_store != store)
         {
-            listener.onLogChanged();
+            return;
         }
+        m_store = null;
+        System.err.println("Log store failed, the log is kept in memory only");
+        e.printStackTrace();
+    }
+
+    /**
+     * Дописывает в хранилище сообщения, ожидающие потока записи, сбрасывает его на диск
+     * и закрывает. Сообщения, добавленные после этого, остаются только в памяти.
+     *
+     * @throws InterruptedException если ожидание потока записи прервано
+     */
+    public void close() throws InterruptedException
+    {
+        AsyncLogDispatcher storeWriter = m_storeWriter;
+        if (storeWriter == null)
+        {
+            return;
+        }
+        m_storeWriter = null;
+        storeWriter.close();
+        LogSegmentStore store = m_store;
+        if (store != null)
+        {
+            try
+            {
+                store.close();
+                m_store = null;
+            }
+            catch (IOException | RuntimeException | InternalError e)
+            {
+                disableStore(store, e);
+            }
+        }
+    }
+
+    /**
+     * Кладет запись в буфер. Повторяющийся текст берется из таблицы недавних
+     * сообщений, и его память в бюджет записи не входит.
+     *
+     * @return номер записи
+     */
+    private long store(LogLevel logLevel, String strMessage, long timestampNanos, long threadId)
+    {
+        String shared = m_interner.intern(strMessage);
+        String message = shared != null ? shared : strMessage;
+        int retainedBytes = LogEntry.entryBytes + (shared != null ? 0 : LogEntry.stringBytes(message));
+        long sequence = m_messages.claim();
+        LogEntry entry = new LogEntry(logLevel, message, sequence, timestampNanos, threadId, retainedBytes);
+        m_messages.publish(sequence, entry);
+        return sequence;
+    }
+
+    /**
+     * Возвращает оценку памяти, занимаемой сообщениями лога, ячейками его буфера и индексом.
+     *
+     * @return размер в байтах, 0 — если лог ограничен только количеством сообщений
+     */
+    public long getRetainedBytes()
+    {
+        return m_messages.getRetainedBytes();
+    }
+
+    /**
+     * Возвращает интервал сброса уведомлений.
+     *
+     * @return интервал в миллисекундах, 0 — уведомления отправляются сразу
+     */
+    public long getFlushIntervalMillis()
+    {
+        return flushIntervalMillis;
+    }
+
+    /**
+     * Возвращает максимальное количество сообщений, которые хранит лог.
+     *
+     * @return максимальная длина очереди сообщений
+     */
+    public int getCapacity()
+    {
+        return queueLength;
     }
 
     /**
@@ -106,13 +356,126 @@ public class LogWindowSource
         return m_messages.range(startFrom, count);
     }
 
+    /**
+     * Читает сообщения с номерами от fromSequence, не больше maxCount штук. Сообщения,
+     * уже вытесненные из лога, пропускаются.
+     *
+     * @param fromSequence номер первого сообщения
+     * @param maxCount     наибольшее количество сообщений
+     * @param consumer     получатель сообщений и их номеров
+     * @return номер, с которого нужно продолжить чтение
+     */
+    public long read(long fromSequence, int maxCount, ObjLongConsumer<? super LogEntry> consumer)
+    {
+        return m_messages.read(fromSequence, maxCount, consumer);
+    }
+
+    /**
+     * Возвращает самые новые сообщения, подходящие под запрос, в порядке добавления.
+     * Сообщения отбираются по индексу уровней и слов, без просмотра всего лога;
+     * сообщения, добавленные после предыдущего запроса, индексируются в этом вызове.
+     *
+     * @param query запрос
+     * @param limit наибольшее количество сообщений
+     * @return подходящие сообщения
+     */
+    public List<LogEntry> query(LogQuery query, int limit)
+    {
+        return m_index.query(query, limit, m_messages::get);
+    }
+
+    /**
+     * Возвращает номер самого старого сообщения, которое еще хранится в логе.
+     *
+     * @return номер сообщения
+     */
+    public long getFirstSequence()
+    {
+        return m_messages.getFirstSequence();
+    }
+
+    /**
+     * Возвращает номер, который получит следующее сообщение.
+     *
+     * @return номер сообщения
+     */
+    public long getNextSequence()
+    {
+        return m_messages.getNextSequence();
+    }
+
     /**
      * Возвращает все сообщения из лога.
      *
-     * @return итерируемый объект со всеми сообщениями из лога
+     * @return копия всех сообщений из лога, от старых к новым
      */
     public Iterable<LogEntry> all()
     {
         return m_messages.all();
     }
-}
+
+    /**
+     * Подписка слушателя с не больше чем одним ожидающим уведомлением.
+     */
+    private final class Subscription implements Runnable
+    {
+        private final LogChangeListener listener;
+        private volatile boolean active = true;
+
+        /**
+         * номер первого сообщения, о котором слушатель еще не уведомлен, -1 — уведомление не ожидается
+         */
+        private final AtomicLong pendingFrom = new AtomicLong(-1);
+
+        Subscription(LogChangeListener listener)
+        {
+            this.listener = listener;
+        }
+
+        /**
+         * Отмечает новое сообщение. Уведомление планируется только для первого сообщения
+         * после предыдущего сброса, следующие сообщения к нему присоединяются.
+         */
+        void notifyAppended(long sequence)
+        {
+            if (!pendingFrom.compareAndSet(-1, sequence))
+            {
+                return;
+            }
+            if (flushIntervalMillis == 0)
+            {
+                run();
+            }
+            else
+            {
+                NotificationScheduler.instance.schedule(this, flushIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Отправляет ожидающее уведомление. Ожидание сбрасывается до чтения конца диапазона,
+         * поэтому сообщение, добавленное во время сброса, запланирует следующее уведомление.
+         */
+        @Override
+        public void run()
+        {
+            long from = pendingFrom.getAndSet(-1);
+            if (from >= 0 && active)
+            {
+                listener.onLogChanged(from, m_messages.getNextSequence());
+            }
+        }
+    }
+
+    /**
+     * Общий для всех логов поток, отправляющий отложенные уведомления.
+     */
+    private static final class NotificationScheduler
+    {
+        static final ScheduledExecutorService instance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log notifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
\ No newline at end of file
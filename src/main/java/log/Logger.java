@@ -1,24 +1,388 @@
 package log;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Точка входа для записи сообщений в лог приложения.
+ *
+ * <p>По умолчанию сообщение добавляется в лог в потоке вызывающего. С системным свойством
+ * {@code log.async=true} сообщения передаются отдельному потоку записи через очередь размером
+ * {@code log.queueSize} (по умолчанию 8192), а при ее заполнении обрабатываются по политике
+ * {@code log.overflow}: block, drop или sample (см. {@link LogOverflowPolicy}).
+ *
+ * <p>Лог хранит сообщения в пределах бюджета памяти {@code log.budgetBytes} (по умолчанию 1 МиБ)
+ * и не больше {@code log.maxEntries} сообщений (по умолчанию 65536).
+ *
+ * <p>Если задано свойство {@code log.dir}, сообщения сохраняются в этом каталоге
+ * в {@link LogSegmentStore}, а при запуске последние из них загружаются обратно в лог.
+ * На диск сообщения пишет отдельный поток, а при завершении приложения оставшиеся
+ * сообщения дописываются и хранилище закрывается.
+ * Размер сегмента в байтах, возраст сегмента в минутах и количество сегментов задаются
+ * свойствами {@code log.segmentSize}, {@code log.segmentMinutes} и {@code log.maxSegments}.
+ *
+ * <p>Сообщения ниже порогового уровня ({@link #setLevel}, свойство {@code log.level},
+ * по умолчанию Debug) отбрасываются. Проверка стоит одного чтения volatile-поля: перегрузки
+ * с {@link Supplier} и с шаблоном строят текст только для добавляемых сообщений, поэтому
+ * отброшенный вызов ничего не выделяет, если лямбда не захватывает переменных, а аргументы
+ * шаблона — уже готовые объекты.
+ */
 public final class Logger
 {
     private static final LogWindowSource defaultLogSource;
+
+    /**
+     * очередь к потоку записи, null — сообщения добавляются в лог сразу
+     */
+    private static final AsyncLogDispatcher dispatcher;
+
+    /**
+     * значение {@link LogLevel#level()} наименьшего добавляемого уровня
+     */
+    private static volatile int minLevel = parseLevel(System.getProperty("log.level", "Debug")).level();
+
     static {
-        defaultLogSource = new LogWindowSource(5);
+        defaultLogSource = new LogWindowSource(Integer.getInteger("log.maxEntries", 65536),
+                Long.getLong("log.flushMillis", LogWindowSource.defaultFlushIntervalMillis),
+                Long.getLong("log.budgetBytes", 1 << 20));
+        String logDirectory = System.getProperty("log.dir");
+        if (logDirectory != null)
+        {
+            try
+            {
+                defaultLogSource.attachStore(new LogSegmentStore(Paths.get(logDirectory),
+                        Integer.getInteger("log.segmentSize", LogSegmentStore.defaultSegmentSize),
+                        Long.getLong("log.segmentMinutes", LogSegmentStore.defaultMaxSegmentAgeMillis / 60_000) * 60_000,
+                        Integer.getInteger("log.maxSegments", LogSegmentStore.defaultMaxSegments)));
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+        dispatcher = Boolean.getBoolean("log.async")
+                ? new AsyncLogDispatcher(defaultLogSource::append,
+                        Integer.getInteger("log.queueSize", 8192),
+                        LogOverflowPolicy.parse(System.getProperty("log.overflow", "block")), "log writer")
+                : null;
+        if (dispatcher != null || logDirectory != null)
+        {
+            Runtime.getRuntime().addShutdownHook(new Thread(Logger::shutdown, "log shutdown"));
+        }
     }
     
     private Logger()
     {
     }
 
+    private static LogLevel parseLevel(String value)
+    {
+        for (LogLevel logLevel : LogLevel.values())
+        {
+            if (logLevel.name().toLowerCase(Locale.ROOT).equals(value.trim().toLowerCase(Locale.ROOT)))
+            {
+                return logLevel;
+            }
+        }
+        throw new IllegalArgumentException("Unknown log level: " + value);
+    }
+
+    public static void trace(String strMessage)
+    {
+        log(LogLevel.Trace, strMessage);
+    }
+
+    public static void trace(Supplier<String> messageSupplier)
+    {
+        log(LogLevel.Trace, messageSupplier);
+    }
+
+    public static void trace(String pattern, Object argument)
+    {
+        log(LogLevel.Trace, pattern, argument);
+    }
+
+    public static void trace(String pattern, Object first, Object second)
+    {
+        log(LogLevel.Trace, pattern, first, second);
+    }
+
     public static void debug(String strMessage)
     {
-        defaultLogSource.append(LogLevel.Debug, strMessage);
+        log(LogLevel.Debug, strMessage);
     }
-    
+
+    public static void debug(Supplier<String> messageSupplier)
+    {
+        log(LogLevel.Debug, messageSupplier);
+    }
+
+    public static void debug(String pattern, Object argument)
+    {
+        log(LogLevel.Debug, pattern, argument);
+    }
+
+    public static void debug(String pattern, Object first, Object second)
+    {
+        log(LogLevel.Debug, pattern, first, second);
+    }
+
+    public static void info(String strMessage)
+    {
+        log(LogLevel.Info, strMessage);
+    }
+
+    public static void info(Supplier<String> messageSupplier)
+    {
+        log(LogLevel.Info, messageSupplier);
+    }
+
+    public static void info(String pattern, Object argument)
+    {
+        log(LogLevel.Info, pattern, argument);
+    }
+
+    public static void info(String pattern, Object first, Object second)
+    {
+        log(LogLevel.Info, pattern, first, second);
+    }
+
+    public static void warning(String strMessage)
+    {
+        log(LogLevel.Warning, strMessage);
+    }
+
+    public static void warning(Supplier<String> messageSupplier)
+    {
+        log(LogLevel.Warning, messageSupplier);
+    }
+
+    public static void warning(String pattern, Object argument)
+    {
+        log(LogLevel.Warning, pattern, argument);
+    }
+
+    public static void warning(String pattern, Object first, Object second)
+    {
+        log(LogLevel.Warning, pattern, first, second);
+    }
+
     public static void error(String strMessage)
     {
-        defaultLogSource.append(LogLevel.Error, strMessage);
+        log(LogLevel.Error, strMessage);
+    }
+
+    public static void error(Supplier<String> messageSupplier)
+    {
+        log(LogLevel.Error, messageSupplier);
+    }
+
+    public static void error(String pattern, Object argument)
+    {
+        log(LogLevel.Error, pattern, argument);
+    }
+
+    public static void error(String pattern, Object first, Object second)
+    {
+        log(LogLevel.Error, pattern, first, second);
+    }
+
+    public static void fatal(String strMessage)
+    {
+        log(LogLevel.Fatal, strMessage);
+    }
+
+    public static void fatal(Supplier<String> messageSupplier)
+    {
+        log(LogLevel.Fatal, messageSupplier);
+    }
+
+    public static void fatal(String pattern, Object argument)
+    {
+        log(LogLevel.Fatal, pattern, argument);
+    }
+
+    public static void fatal(String pattern, Object first, Object second)
+    {
+        log(LogLevel.Fatal, pattern, first, second);
+    }
+
+    /**
+     * Добавляет сообщение, если его уровень не ниже порогового.
+     *
+     * @param logLevel   уровень сообщения
+     * @param strMessage текст сообщения
+     */
+    public static void log(LogLevel logLevel, String strMessage)
+    {
+        if (logLevel.level() >= minLevel)
+        {
+            append(logLevel, strMessage);
+        }
+    }
+
+    /**
+     * Добавляет сообщение, если его уровень не ниже порогового. Текст строится,
+     * только если сообщение будет добавлено.
+     *
+     * @param logLevel        уровень сообщения
+     * @param messageSupplier построитель текста сообщения
+     */
+    public static void log(LogLevel logLevel, Supplier<String> messageSupplier)
+    {
+        if (logLevel.level() >= minLevel)
+        {
+            append(logLevel, messageSupplier.get());
+        }
+    }
+
+    /**
+     * Добавляет сообщение, если его уровень не ниже порогового. Место {@code {}} в шаблоне
+     * занимает аргумент; текст строится, только если сообщение будет добавлено.
+     *
+     * @param logLevel уровень сообщения
+     * @param pattern  шаблон сообщения
+     * @param argument аргумент
+     */
+    public static void log(LogLevel logLevel, String pattern, Object argument)
+    {
+        if (logLevel.level() >= minLevel)
+        {
+            append(logLevel, format(pattern, argument, null, 1));
+        }
+    }
+
+    /**
+     * Добавляет сообщение, если его уровень не ниже порогового. Места {@code {}} в шаблоне
+     * по порядку занимают аргументы; текст строится, только если сообщение будет добавлено.
+     *
+     * @param logLevel уровень сообщения
+     * @param pattern  шаблон сообщения
+     * @param first    первый аргумент
+     * @param second   второй аргумент
+     */
+    public static void log(LogLevel logLevel, String pattern, Object first, Object second)
+    {
+        if (logLevel.level() >= minLevel)
+        {
+            append(logLevel, format(pattern, first, second, 2));
+        }
+    }
+
+    /**
+     * Проверяет, будут ли добавляться сообщения указанного уровня.
+     *
+     * @param logLevel уровень сообщения
+     * @return true, если уровень не ниже порогового
+     */
+    public static boolean isEnabled(LogLevel logLevel)
+    {
+        return logLevel.level() >= minLevel;
+    }
+
+    /**
+     * Меняет пороговый уровень: сообщения ниже него отбрасываются без построения текста.
+     *
+     * @param logLevel наименьший уровень добавляемых сообщений
+     */
+    public static void setLevel(LogLevel logLevel)
+    {
+        minLevel = logLevel.level();
+    }
+
+    /**
+     * Возвращает пороговый уровень.
+     *
+     * @return наименьший уровень добавляемых сообщений
+     */
+    public static LogLevel getLevel()
+    {
+        int level = minLevel;
+        for (LogLevel logLevel : LogLevel.values())
+        {
+            if (logLevel.level() == level)
+            {
+                return logLevel;
+            }
+        }
+        return LogLevel.Trace;
+    }
+
+    /**
+     * Подставляет аргументы в места {@code {}} шаблона по порядку.
+     */
+    private static String format(String pattern, Object first, Object second, int argumentCount)
+    {
+        if (pattern == null)
+        {
+            return "null";
+        }
+        StringBuilder result = new StringBuilder(pattern.length() + 16);
+        int argument = 0;
+        int from = 0;
+        int placeholder;
+        while (argument < argumentCount && (placeholder = pattern.indexOf("{}", from)) >= 0)
+        {
+            result.append(pattern, from, placeholder).append(argument == 0 ? first : second);
+            argument++;
+            from = placeholder + 2;
+        }
+        return result.append(pattern, from, pattern.length()).toString();
+    }
+
+    private static void append(LogLevel logLevel, String strMessage)
+    {
+        if (dispatcher != null)
+        {
+            dispatcher.offer(logLevel, strMessage);
+        }
+        else
+        {
+            defaultLogSource.append(logLevel, strMessage);
+        }
+    }
+
+    /**
+     * Дописывает сообщения, оставшиеся в очереди, и закрывает хранилище на диске.
+     * Вызывается при завершении приложения.
+     */
+    private static void shutdown()
+    {
+        try
+        {
+            if (dispatcher != null)
+            {
+                dispatcher.close();
+            }
+            defaultLogSource.close();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Возвращает количество сообщений, отброшенных асинхронным логгером из-за заполненной очереди.
+     *
+     * @return количество отброшенных сообщений, 0 — если логгер синхронный
+     */
+    public static long getDroppedCount()
+    {
+        return dispatcher == null ? 0 : dispatcher.getDroppedCount();
+    }
+
+    /**
+     * Возвращает количество сообщений, которые поток записи асинхронного логгера не смог
+     * добавить в лог из-за исключения.
+     *
+     * @return количество необработанных сообщений, 0 — если логгер синхронный
+     */
+    public static long getFailedCount()
+    {
+        return dispatcher == null ? 0 : dispatcher.getFailedCount();
     }
 
     public static LogWindowSource getDefaultLogSource()
@@ -0,0 +1,45 @@
+package log;
+
+/**
+ * Таблица недавних текстов сообщений, через которую повторяющиеся сообщения (например,
+ * локализованное "робот у цели") хранятся в логе одной строкой на все записи.
+ *
+ * <p>Таблица — массив фиксированного размера, ячейка выбирается по хэшу текста. Новый текст
+ * вытесняет прежний из своей ячейки, поэтому часто повторяющиеся тексты остаются в таблице,
+ * а одноразовые только ненадолго занимают ячейку. Гонки между потоками безопасны: строки
+ * неизменяемы, и в худшем случае одинаковый текст будет храниться дважды.
+ */
+class MessageInterner
+{
+    /**
+     * количество ячеек таблицы (степень двойки) и наибольшая длина текста, который стоит хранить
+     */
+    private static final int tableSize = 1024;
+    private static final int maxInternedLength = 256;
+
+    private final String[] table = new String[tableSize];
+
+    /**
+     * Возвращает уже известную строку с таким же текстом или null, запоминая текст для
+     * следующих сообщений.
+     *
+     * @param message текст сообщения
+     * @return ранее встреченная равная строка или null
+     */
+    String intern(String message)
+    {
+        if (message.length() > maxInternedLength)
+        {
+            return null;
+        }
+        int hash = message.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & (tableSize - 1);
+        String known = table[slot];
+        if (known != null && known.equals(message))
+        {
+            return known;
+        }
+        table[slot] = message;
+        return null;
+    }
+}
@@ -51,8 +51,8 @@ public class StateManager implements State {
         configFilePath = new File(
                 System.getProperty("user.home") + File.separator + "config.dat"
         );
-        try (ObjectOutputStream obj = new ObjectOutputStream(new FileOutputStream(configFilePath))) {
-            obj.writeObject(state);
+        try {
+            writeState(state, configFilePath);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -67,8 +67,8 @@ public class StateManager implements State {
                 System.getProperty("user.home") + File.separator + "config.dat"
         );
         Map<String, String> state = null;
-        try (ObjectInputStream obj = new ObjectInputStream(new FileInputStream(configFilePath))) {
-            state = (Map<String, String>) obj.readObject();
+        try {
+            state = readState(configFilePath);
         } catch (IOException | ClassNotFoundException e) {
             e.printStackTrace();
         }
@@ -81,6 +81,34 @@ public class StateManager implements State {
         }
     }
 
+    /**
+     * Записывает состояние окон в файл
+     *
+     * @param state состояние окон
+     * @param file  файл для записи
+     * @throws IOException при ошибке записи
+     */
+    static void writeState(Map<String, String> state, File file) throws IOException {
+        try (ObjectOutputStream obj = new ObjectOutputStream(new FileOutputStream(file))) {
+            obj.writeObject(state);
+        }
+    }
+
+    /**
+     * Читает состояние окон из файла
+     *
+     * @param file файл с сохраненным состоянием
+     * @return состояние окон
+     * @throws IOException            при ошибке чтения
+     * @throws ClassNotFoundException если содержимое файла не является состоянием окон
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, String> readState(File file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream obj = new ObjectInputStream(new FileInputStream(file))) {
+            return (Map<String, String>) obj.readObject();
+        }
+    }
+
     /**
      * Метод для сохранения состояния компонентов окна
      *
@@ -88,7 +116,7 @@ public class StateManager implements State {
      * @param state     состояние окна
      * @param prefix    префикс для идентификации компонента
      */
-    private void saveComponentState(Component component, Map<String, String> state, String prefix) {
+    static void saveComponentState(Component component, Map<String, String> state, String prefix) {
         if (component.isVisible()) {
             state.put(prefix + "X", Integer.toString(component.getX()));
             state.put(prefix + "Y", Integer.toString(component.getY()));
@@ -108,7 +136,7 @@ public class StateManager implements State {
      * @param state     состояние окна
      * @param prefix    префикс для идентификации компонента
      */
-    private void restoreComponentState(Component component, Map<String, String> state, String prefix) {
+    static void restoreComponentState(Component component, Map<String, String> state, String prefix) {
         if (state.containsKey(prefix + "X") && state.containsKey(prefix + "Y") &&
                 state.containsKey(prefix + "Width") && state.containsKey(prefix + "Height")) {
             component.setBounds(